@@ -0,0 +1,201 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.data.DataManager;
+import org.bukkit.configuration.MemoryConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Seeded SQLite databases shared by the benchmarks. Building the 10M dataset takes a while, so each one is kept
+// under easystats.bench.dir (default target/datasets) and only rebuilt once it is older than
+// easystats.bench.max-age-hours (default 24), because the queries use windows relative to the current time.
+public final class BenchmarkDatasets {
+    public static final String DATABASE_FILE = "database.db";
+    public static final int CAMPAIGNS = 10;
+
+    private static final Logger LOGGER = Logger.getLogger("EasyStats-Benchmark");
+    private static final String MARKER_FILE = ".complete";
+    private static final int INSERT_BATCH = 10_000;
+    private static final int COMMIT_EVERY = 200_000;
+    private static final int PLAYER_COUNT_PLATFORMS = 10;
+    private static final long PLAYER_COUNT_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+
+    private BenchmarkDatasets() {
+    }
+
+    public static Path prepare(int joins) throws IOException, SQLException {
+        Path directory = Paths.get(System.getProperty("easystats.bench.dir", "target/datasets")).resolve("joins-" + joins);
+        Path marker = directory.resolve(MARKER_FILE);
+        long maxAge = TimeUnit.HOURS.toMillis(Long.getLong("easystats.bench.max-age-hours", 24L));
+        if (Files.exists(marker) && System.currentTimeMillis() - Files.getLastModifiedTime(marker).toMillis() < maxAge) {
+            return directory;
+        }
+
+        deleteRecursively(directory);
+        Files.createDirectories(directory);
+        long start = System.currentTimeMillis();
+        seed(directory, joins);
+        Files.createFile(marker);
+        LOGGER.info("Seeded " + joins + " joins into " + directory + " in " + (System.currentTimeMillis() - start) + " ms");
+        return directory;
+    }
+
+    // Copy of a prepared dataset for benchmarks that write to it
+    public static Path copy(Path dataset) throws IOException {
+        Path copy = Files.createTempDirectory("easystats-bench");
+        Files.copy(dataset.resolve(DATABASE_FILE), copy.resolve(DATABASE_FILE));
+        return copy;
+    }
+
+    public static DataManager open(Path directory) {
+        return new DataManager(LOGGER, config(), directory.toFile());
+    }
+
+    // Caching is off so every call measures the storage path
+    public static MemoryConfiguration config() {
+        MemoryConfiguration config = new MemoryConfiguration();
+        config.set("database.type", "sqlite");
+        config.set("database.sqlite.file", DATABASE_FILE);
+        config.set("cache.max-entries", 0);
+        config.set("write-queue.capacity", 200_000);
+        return config;
+    }
+
+    public static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static void seed(Path directory, int joins) throws SQLException {
+        // Let the plugin create the schema, then bulk load around it
+        open(directory).close();
+
+        long now = System.currentTimeMillis();
+        SyntheticData data = new SyntheticData(SyntheticData.SEED, now);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + directory.resolve(DATABASE_FILE).toAbsolutePath())) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA synchronous = OFF");
+            }
+            connection.setAutoCommit(false);
+            insertJoins(connection, data, joins);
+            insertPlayerCounts(connection, now);
+            insertCampaigns(connection);
+            connection.commit();
+            rebuildAggregates(connection);
+            connection.commit();
+        }
+    }
+
+    private static void insertJoins(Connection connection, SyntheticData data, int joins) throws SQLException {
+        try (PreparedStatement joinRows = connection.prepareStatement(
+                "INSERT INTO joins (uuid, platform, hostname, client_type, join_time) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement platformRows = connection.prepareStatement(
+                     "INSERT INTO platform_stats (platform, client_type, join_time) VALUES (?, ?, ?)");
+             PreparedStatement countryRows = connection.prepareStatement(
+                     "INSERT INTO country_stats (platform, country, tier, client_type, join_time) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= joins; i++) {
+                SyntheticData.Join join = data.nextJoin();
+                joinRows.setString(1, join.playerId().toString());
+                joinRows.setString(2, join.hostname());
+                joinRows.setString(3, join.hostname());
+                joinRows.setString(4, join.clientType());
+                joinRows.setLong(5, join.time());
+                joinRows.addBatch();
+
+                platformRows.setString(1, join.hostname());
+                platformRows.setString(2, join.clientType());
+                platformRows.setLong(3, join.time());
+                platformRows.addBatch();
+
+                countryRows.setString(1, join.hostname());
+                countryRows.setString(2, join.country());
+                countryRows.setString(3, join.tier());
+                countryRows.setString(4, join.clientType());
+                countryRows.setLong(5, join.time());
+                countryRows.addBatch();
+
+                if (i % INSERT_BATCH == 0 || i == joins) {
+                    joinRows.executeBatch();
+                    platformRows.executeBatch();
+                    countryRows.executeBatch();
+                }
+                if (i % COMMIT_EVERY == 0) {
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+    private static void insertPlayerCounts(Connection connection, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO player_counts (platform, count, timestamp) VALUES (?, ?, ?)")) {
+            for (int rank = 0; rank < PLAYER_COUNT_PLATFORMS; rank++) {
+                int base = 400 / (rank + 1);
+                for (long time = now - SyntheticData.HISTORY; time < now; time += PLAYER_COUNT_INTERVAL) {
+                    // Daily cycle peaking in the evening
+                    double hour = (time % TimeUnit.DAYS.toMillis(1)) / (double) TimeUnit.HOURS.toMillis(1);
+                    statement.setString(1, SyntheticData.hostname(rank));
+                    statement.setInt(2, (int) (base * (1.2 + Math.sin((hour - 14) / 24 * 2 * Math.PI))));
+                    statement.setLong(3, time);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static void insertCampaigns(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO campaigns (name, description, start_date, end_date, hostname, budget) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < CAMPAIGNS; i++) {
+                statement.setString(1, "campaign-" + i);
+                statement.setString(2, "Synthetic campaign " + i);
+                statement.setString(3, LocalDate.now().minusDays(60).toString());
+                statement.setString(4, null);
+                statement.setString(5, SyntheticData.hostname(i));
+                statement.setDouble(6, 100.0 * (i + 1));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    // Same aggregation the schema migrations use to backfill rollups and totals
+    private static void rebuildAggregates(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String granularity : new String[]{"hourly", "daily"}) {
+                long bucketSize = granularity.equals("hourly") ? TimeUnit.HOURS.toMillis(1) : TimeUnit.DAYS.toMillis(1);
+                String bucket = "join_time - (join_time % " + bucketSize + ")";
+                stmt.execute("DELETE FROM platform_stats_" + granularity);
+                stmt.execute("INSERT INTO platform_stats_" + granularity + " (bucket_start, platform, client_type, joins) " +
+                        "SELECT " + bucket + ", platform, client_type, COUNT(*) FROM platform_stats GROUP BY " + bucket + ", platform, client_type");
+                stmt.execute("DELETE FROM country_stats_" + granularity);
+                stmt.execute("INSERT INTO country_stats_" + granularity + " (bucket_start, platform, country, tier, client_type, joins) " +
+                        "SELECT " + bucket + ", platform, country, tier, client_type, COUNT(*) FROM country_stats " +
+                        "GROUP BY " + bucket + ", platform, country, tier, client_type");
+            }
+            stmt.execute("DELETE FROM join_totals");
+            stmt.execute("INSERT INTO join_totals (platform, client_type, country, tier, joins) " +
+                    "SELECT platform, client_type, country, tier, COUNT(*) FROM country_stats GROUP BY platform, client_type, country, tier");
+            stmt.execute("ANALYZE");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.client.ClientTypeDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Per-join cost of deciding Java vs Bedrock: the old reflective lookup on every call, the method handle used at
+// pre-login, and the cached read every later lookup gets. Runs against the FloodgateApi stand-in in this module.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientTypeBenchmark {
+    private static final int PLAYERS = 4096;
+
+    private final UUID[] players = new UUID[PLAYERS];
+    private ClientTypeDetector detector;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(SyntheticData.SEED);
+        for (int i = 0; i < PLAYERS; i++) {
+            boolean bedrock = random.nextDouble() < SyntheticData.BEDROCK_SHARE;
+            players[i] = new UUID(bedrock ? 0L : random.nextLong(), random.nextLong());
+        }
+        detector = new ClientTypeDetector(Logger.getLogger("EasyStats-Benchmark"), true);
+        for (UUID player : players) {
+            detector.detect(player);
+        }
+    }
+
+    private UUID nextPlayer() {
+        return players[next++ & (PLAYERS - 1)];
+    }
+
+    // What DependencyManager did on every join before the detector existed
+    @Benchmark
+    public String reflective() throws Exception {
+        Class<?> floodgateApiClass = Class.forName("org.geysermc.floodgate.api.FloodgateApi");
+        Object floodgateApi = floodgateApiClass.getMethod("getInstance").invoke(null);
+        boolean isFloodgatePlayer = (boolean) floodgateApiClass.getMethod("isFloodgatePlayer", UUID.class)
+                .invoke(floodgateApi, nextPlayer());
+        return isFloodgatePlayer ? "bedrock" : "java";
+    }
+
+    @Benchmark
+    public String detect() {
+        return detector.detect(nextPlayer());
+    }
+
+    @Benchmark
+    public String cached() {
+        return detector.getClientType(nextPlayer());
+    }
+}
@@ -0,0 +1,56 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.data.DataManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Queries without a time filter argument: player count summaries and campaign metrics
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupQueryBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int joins;
+
+    private DataManager dataManager;
+    private String hostname;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataManager = BenchmarkDatasets.open(BenchmarkDatasets.prepare(joins));
+        hostname = SyntheticData.topHostname();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataManager.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> getPlayerCountStats() {
+        return dataManager.getPlayerCountStats(hostname);
+    }
+
+    @Benchmark
+    public Map<String, Object> getCampaignMetrics() {
+        // campaign-0 points at the busiest hostname
+        return dataManager.getCampaignMetrics("campaign-0");
+    }
+}
@@ -0,0 +1,58 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.data.DataManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Time-filtered platform and country stats for the busiest hostname
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeQueryBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int joins;
+
+    @Param({"1h", "24h", "7d", "30d"})
+    public String timeFilter;
+
+    private DataManager dataManager;
+    private String hostname;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataManager = BenchmarkDatasets.open(BenchmarkDatasets.prepare(joins));
+        hostname = SyntheticData.topHostname();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataManager.close();
+    }
+
+    @Benchmark
+    public Map<String, Long> getPlatformStats() {
+        return dataManager.getPlatformStats(hostname, timeFilter);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Map<String, Long>>> getCountryStats() {
+        return dataManager.getCountryStats(hostname, timeFilter);
+    }
+}
@@ -0,0 +1,73 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.data.DataManager;
+import gg.gianluca.easystats.data.WriteBehindQueue;
+import gg.gianluca.easystats.model.JoinData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Sustained join throughput: each invocation records a burst of joins and waits until all of them are committed
+// (or dropped), so the score includes batching, index maintenance and rollup upserts.
+// Runs against a copy of the dataset so the cached one stays unchanged.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecordJoinBenchmark {
+    private static final int BURST = 1000;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int joins;
+
+    private Path directory;
+    private DataManager dataManager;
+    private SyntheticData data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = BenchmarkDatasets.copy(BenchmarkDatasets.prepare(joins));
+        dataManager = BenchmarkDatasets.open(directory);
+        data = new SyntheticData(SyntheticData.SEED + 1, System.currentTimeMillis());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dataManager.close();
+        if (dataManager.getWriteQueue().getDroppedCount() > 0) {
+            System.err.println("Write queue dropped " + dataManager.getWriteQueue().getDroppedCount() + " joins, raise write-queue.capacity");
+        }
+        BenchmarkDatasets.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void recordJoin() throws InterruptedException {
+        WriteBehindQueue writeQueue = dataManager.getWriteQueue();
+        long done = writeQueue.getCommittedCount() + writeQueue.getDroppedCount() + BURST;
+        for (int i = 0; i < BURST; i++) {
+            SyntheticData.Join join = data.nextJoin();
+            dataManager.recordJoin(new JoinData(join.playerId(), "Player", join.hostname(), join.bedrock(),
+                    join.hostname(), join.country(), join.tier()));
+        }
+        while (writeQueue.getCommittedCount() + writeQueue.getDroppedCount() < done) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package gg.gianluca.easystats.benchmark;
+
+import gg.gianluca.easystats.session.SessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Many threads ending sessions at once, mostly on the same few hostnames; change the thread count with -t
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SessionBenchmark {
+    private SessionManager sessionManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionManager = new SessionManager();
+    }
+
+    @State(Scope.Thread)
+    public static class Player {
+        private static final int HOSTNAMES = 1024;
+
+        private final String[] hostnames = new String[HOSTNAMES];
+        private UUID playerId;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SyntheticData data = new SyntheticData(SyntheticData.SEED + Thread.currentThread().getId(), System.currentTimeMillis());
+            for (int i = 0; i < HOSTNAMES; i++) {
+                hostnames[i] = data.nextHostname();
+            }
+            playerId = UUID.randomUUID();
+        }
+
+        private String nextHostname() {
+            return hostnames[next++ & (HOSTNAMES - 1)];
+        }
+    }
+
+    @Benchmark
+    public void endSession(Player player) {
+        String hostname = player.nextHostname();
+        sessionManager.startSession(player.playerId, hostname);
+        sessionManager.endSession(player.playerId, hostname);
+    }
+}
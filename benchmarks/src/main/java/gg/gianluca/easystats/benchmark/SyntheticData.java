@@ -0,0 +1,100 @@
+package gg.gianluca.easystats.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Reproducible join traffic: the same seed always yields the same rows. Hostnames and countries follow
+// Zipf distributions, so a few campaign domains and countries get most of the joins like on a real network.
+public final class SyntheticData {
+    public static final long SEED = 0x5EED_E57A75L;
+    public static final long HISTORY = TimeUnit.DAYS.toMillis(90);
+    public static final double BEDROCK_SHARE = 0.3;
+
+    private static final String[] CAMPAIGN_HOSTNAMES = {
+            "play.example.net", "mc.example.net", "lobby.example.net", "yt.example.net", "tiktok.example.net",
+            "discord.example.net", "vote.example.net", "ads.example.net", "bedrock.example.net", "eu.example.net"
+    };
+    private static final int HOSTNAME_COUNT = 60;
+
+    // Ordered by how many players they usually bring, with their tier from the default countries.yml
+    private static final String[][] COUNTRIES = {
+            {"US", "tier-1"}, {"DE", "tier-1"}, {"BR", "other"}, {"GB", "tier-1"}, {"PL", "tier-1"}, {"FR", "tier-1"},
+            {"CA", "tier-1"}, {"RU", "other"}, {"NL", "tier-1"}, {"MX", "other"}, {"ES", "tier-1"}, {"IT", "tier-1"},
+            {"TR", "other"}, {"PH", "other"}, {"ID", "other"}, {"IN", "other"}, {"AU", "tier-1"}, {"SE", "tier-1"},
+            {"AR", "other"}, {"VN", "other"}, {"JP", "tier-1"}, {"KR", "tier-1"}, {"UA", "other"}, {"CZ", "tier-1"},
+            {"RO", "other"}, {"CL", "other"}, {"TH", "other"}, {"EG", "other"}, {"NO", "tier-1"}, {"XX", "unknown"}
+    };
+
+    private final SplittableRandom random;
+    private final Zipf hostnameDistribution = new Zipf(HOSTNAME_COUNT, 1.1);
+    private final Zipf countryDistribution = new Zipf(COUNTRIES.length, 1.2);
+    private final long now;
+
+    public SyntheticData(long seed, long now) {
+        this.random = new SplittableRandom(seed);
+        this.now = now;
+    }
+
+    public static String hostname(int rank) {
+        return rank < CAMPAIGN_HOSTNAMES.length ? CAMPAIGN_HOSTNAMES[rank] : "partner-" + rank + ".example.net";
+    }
+
+    // The busiest hostname, which is also what placeholders on the main lobby ask for
+    public static String topHostname() {
+        return hostname(0);
+    }
+
+    public Join nextJoin() {
+        String[] country = COUNTRIES[countryDistribution.sample(random)];
+        return new Join(
+                new UUID(random.nextLong(), random.nextLong()),
+                hostname(hostnameDistribution.sample(random)),
+                random.nextDouble() < BEDROCK_SHARE,
+                country[0],
+                country[1],
+                now - (long) (random.nextDouble() * HISTORY));
+    }
+
+    public String nextHostname() {
+        return hostname(hostnameDistribution.sample(random));
+    }
+
+    public record Join(UUID playerId, String hostname, boolean bedrock, String country, String tier, long time) {
+        public String clientType() {
+            return bedrock ? "bedrock" : "java";
+        }
+    }
+
+    // Inverse-CDF sampling over a precomputed table, rank 0 being the most likely
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        private Zipf(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int rank = 0; rank < size; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < size; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        private int sample(SplittableRandom random) {
+            double value = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
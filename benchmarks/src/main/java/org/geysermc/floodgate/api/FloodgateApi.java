@@ -0,0 +1,15 @@
+package org.geysermc.floodgate.api;
+
+import java.util.UUID;
+
+// Stand-in with the same shape as Floodgate's API so client detection can be benchmarked without a server.
+// Like Floodgate, Bedrock players get UUIDs whose most significant half is zero.
+public interface FloodgateApi {
+    FloodgateApi INSTANCE = uuid -> uuid.getMostSignificantBits() == 0;
+
+    static FloodgateApi getInstance() {
+        return INSTANCE;
+    }
+
+    boolean isFloodgatePlayer(UUID uuid);
+}
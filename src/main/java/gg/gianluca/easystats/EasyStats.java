@@ -1,38 +1,80 @@
 package gg.gianluca.easystats;
 
+import gg.gianluca.easystats.api.ApiExecutor;
+import gg.gianluca.easystats.api.AsyncEasyStatsAPI;
+import gg.gianluca.easystats.api.AsyncEasyStatsAPIImpl;
 import gg.gianluca.easystats.api.EasyStatsAPI;
 import gg.gianluca.easystats.api.EasyStatsAPIImpl;
+import gg.gianluca.easystats.client.ClientTypeDetector;
 import gg.gianluca.easystats.command.base.BaseCommand;
+import gg.gianluca.easystats.command.base.CommandQueryExecutor;
 import gg.gianluca.easystats.command.subcommands.*;
+import gg.gianluca.easystats.country.CountryTiers;
 import gg.gianluca.easystats.data.DataManager;
 import gg.gianluca.easystats.expansion.EasyStatsExpansion;
+import gg.gianluca.easystats.hostname.HostnameListener;
+import gg.gianluca.easystats.hostname.HostnameTracker;
 import gg.gianluca.easystats.listener.PlayerListener;
+import gg.gianluca.easystats.platform.OnlineCounters;
+import gg.gianluca.easystats.platform.PlatformResolver;
+import gg.gianluca.easystats.session.SessionJournal;
 import gg.gianluca.easystats.session.SessionManager;
 import gg.gianluca.easystats.util.DependencyManager;
 import gg.gianluca.easystats.util.GeoIPManager;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class EasyStats extends JavaPlugin {
     private DataManager dataManager;
     private SessionManager sessionManager;
     private EasyStatsAPI api;
+    private ApiExecutor apiExecutor;
+    private AsyncEasyStatsAPI asyncApi;
     private DependencyManager dependencyManager;
+    private ClientTypeDetector clientTypeDetector;
     private GeoIPManager geoIPManager;
+    private HostnameTracker hostnameTracker;
+    private PlatformResolver platformResolver;
+    private OnlineCounters onlineCounters;
+    private CountryTiers countryTiers;
+    private CommandQueryExecutor commandQueryExecutor;
     private final Map<String, BaseCommand> subcommands = new HashMap<>();
 
     @Override
     public void onEnable() {
         // Initialize managers
         this.dataManager = new DataManager(this);
-        this.sessionManager = new SessionManager();
+        this.sessionManager = new SessionManager(dataManager.getSessionJournal());
         this.geoIPManager = new GeoIPManager(this);
+        this.geoIPManager.initialize();
+        this.dependencyManager = new DependencyManager(this);
+        this.clientTypeDetector = new ClientTypeDetector(getLogger(), dependencyManager.isFloodgateEnabled());
+        this.hostnameTracker = new HostnameTracker();
+        this.platformResolver = new PlatformResolver(getLogger());
+        this.onlineCounters = new OnlineCounters();
+        this.countryTiers = new CountryTiers(getLogger());
+        reloadLookups();
+
+        // Register listeners
+        Bukkit.getPluginManager().registerEvents(new HostnameListener(hostnameTracker), this);
+        Bukkit.getPluginManager().registerEvents(new PlayerListener(this), this);
 
         // Register commands
+        this.commandQueryExecutor = new CommandQueryExecutor(this, getConfig().getConfigurationSection("commands"));
         this.getCommand("easystats").setExecutor(this);
 
         // Register subcommands
@@ -44,38 +86,141 @@ public class EasyStats extends JavaPlugin {
         subcommands.put("session", new SessionCommand(this));
         subcommands.put("export", new ExportCommand(this));
         subcommands.put("playercount", new PlayerCountCommand(this));
+        subcommands.put("metrics", new MetricsCommand(this));
+        subcommands.put("prune", new PruneCommand(this));
+
+        // Initialize API
+        this.api = new EasyStatsAPIImpl(this);
+        this.apiExecutor = new ApiExecutor(getConfig().getConfigurationSection("api"));
+        this.asyncApi = new AsyncEasyStatsAPIImpl(api, apiExecutor);
 
-        // Register PlaceholderAPI expansion
+        // Register PlaceholderAPI expansion; it reads through the API, so only once that exists
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
             new EasyStatsExpansion(this).register();
         }
 
-        // Initialize API
-        this.api = new EasyStatsAPIImpl(this);
-
         // Start task to record player counts
-        int interval = getConfig().getInt("player_count.interval", 300); // Default 5 minutes
-        Bukkit.getScheduler().runTaskTimer(this, () -> {
-            for (String hostname : dataManager.getAllHostnames()) {
-                int count = Bukkit.getOnlinePlayers().stream()
-                    .filter(p -> p.getAddress().getHostName().equals(hostname))
-                    .mapToInt(p -> 1)
-                    .sum();
-                dataManager.recordPlayerCount(hostname, count);
+        schedulePlayerCounts();
+
+        // Keep the session journal recoverable and compact
+        scheduleSessionJournal();
+
+        // Delete rows older than the configured retention periods
+        scheduleRetention();
+    }
+
+    // Recompiles the hostname patterns from platforms.yml and the tiers from countries.yml
+    public void reloadLookups() {
+        platformResolver.load(loadResourceConfig("platforms.yml").getConfigurationSection("platforms"));
+        onlineCounters.remap(platformResolver::resolve);
+        countryTiers.load(loadResourceConfig("countries.yml").getConfigurationSection("countries"));
+    }
+
+    private YamlConfiguration loadResourceConfig(String name) {
+        File file = new File(getDataFolder(), name);
+        if (!file.exists()) {
+            saveResource(name, false);
+        }
+        return YamlConfiguration.loadConfiguration(file);
+    }
+
+    private void schedulePlayerCounts() {
+        // player_count.interval (seconds) from older configs still wins over record_interval (minutes)
+        long seconds = getConfig().isSet("player_count.interval")
+                ? getConfig().getLong("player_count.interval")
+                : getConfig().getLong("player_count.record_interval", 15L) * 60L;
+        if (seconds <= 0) {
+            return;
+        }
+        // Only snapshots the live counters, the write itself goes through the write-behind queue
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+            // Every configured platform gets a row, zero included, plus unmatched traffic once it shows up
+            Map<String, Integer> counts = onlineCounters.getPlatformCounts();
+            for (String platform : platformResolver.getPlatforms()) {
+                counts.putIfAbsent(platform, 0);
             }
-        }, interval * 20L, interval * 20L);
+            dataManager.recordPlayerCounts(counts);
+        }, seconds * 20L, seconds * 20L);
+    }
+
+    private void scheduleSessionJournal() {
+        SessionJournal journal = sessionManager.getJournal();
+        long heartbeat = Math.max(1L, getConfig().getLong("sessions.heartbeat-seconds", 30L)) * 20L;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, journal::heartbeat, 0L, heartbeat);
+        long compaction = Math.max(1L, getConfig().getLong("sessions.compact-interval-minutes", 5L)) * 60L * 20L;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, journal::compact, compaction, compaction);
+    }
+
+    private void scheduleRetention() {
+        long interval = getConfig().getLong("data-retention.run-interval-minutes", 60L) * 60L * 20L;
+        if (interval <= 0) {
+            return;
+        }
+        // First run a minute after startup, then on the configured interval; never on the main thread
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> dataManager.getRetentionService().run(false), 60L * 20L, interval);
     }
 
     @Override
     public void onDisable() {
+        if (commandQueryExecutor != null) {
+            commandQueryExecutor.shutdown();
+        }
+        if (apiExecutor != null) {
+            apiExecutor.shutdown();
+        }
         if (geoIPManager != null) {
             geoIPManager.close();
         }
+        if (sessionManager != null) {
+            // Quit events aren't delivered once the plugin is disabled, so end the open sessions here
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                UUID playerId = player.getUniqueId();
+                sessionManager.endSession(playerId, platformResolver.resolve(hostnameTracker.getHostname(playerId)));
+            }
+        }
         if (dataManager != null) {
+            // Flushes the write-behind queue before closing the connection pool
             dataManager.close();
         }
     }
 
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        BaseCommand subcommand = args.length > 0 ? subcommands.get(args[0].toLowerCase()) : null;
+        if (subcommand == null) {
+            sender.sendMessage(ChatColor.GOLD + "=== EasyStats Commands ===");
+            for (BaseCommand available : subcommands.values()) {
+                if (sender.hasPermission(available.getPermission())) {
+                    sender.sendMessage(ChatColor.YELLOW + available.getUsage() + ChatColor.GRAY + " - " + available.getDescription());
+                }
+            }
+            return true;
+        }
+
+        // Subcommands see their own arguments only
+        return subcommand.onCommand(sender, command, label, Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            List<String> completions = new ArrayList<>();
+            for (Map.Entry<String, BaseCommand> entry : subcommands.entrySet()) {
+                if (entry.getKey().startsWith(args[0].toLowerCase()) && sender.hasPermission(entry.getValue().getPermission())) {
+                    completions.add(entry.getKey());
+                }
+            }
+            return completions;
+        }
+
+        BaseCommand subcommand = args.length > 1 ? subcommands.get(args[0].toLowerCase()) : null;
+        if (subcommand == null) {
+            return null;
+        }
+        return subcommand.onTabComplete(sender, command, alias, Arrays.copyOfRange(args, 1, args.length));
+    }
+
     public DataManager getDataManager() {
         return dataManager;
     }
@@ -88,11 +233,43 @@ public class EasyStats extends JavaPlugin {
         return api;
     }
 
+    public AsyncEasyStatsAPI getAsyncAPI() {
+        return asyncApi;
+    }
+
+    public ApiExecutor getApiExecutor() {
+        return apiExecutor;
+    }
+
     public DependencyManager getDependencyManager() {
         return dependencyManager;
     }
 
+    public ClientTypeDetector getClientTypeDetector() {
+        return clientTypeDetector;
+    }
+
     public GeoIPManager getGeoIPManager() {
         return geoIPManager;
     }
+
+    public HostnameTracker getHostnameTracker() {
+        return hostnameTracker;
+    }
+
+    public PlatformResolver getPlatformResolver() {
+        return platformResolver;
+    }
+
+    public OnlineCounters getOnlineCounters() {
+        return onlineCounters;
+    }
+
+    public CountryTiers getCountryTiers() {
+        return countryTiers;
+    }
+
+    public CommandQueryExecutor getCommandQueryExecutor() {
+        return commandQueryExecutor;
+    }
 } 
\ No newline at end of file
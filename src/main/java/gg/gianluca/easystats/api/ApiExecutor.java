@@ -0,0 +1,133 @@
+package gg.gianluca.easystats.api;
+
+import gg.gianluca.easystats.data.QueryContext;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Bounded I/O pool behind AsyncEasyStatsAPI. Every task runs under a QueryContext carrying the configured query
+// timeout and the cache policy of the call. A saturated pool fails the returned future with a
+// RejectedExecutionException instead of queueing without limit or running the task on the caller's thread.
+public class ApiExecutor {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final LongAdder cachedHits = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    public ApiExecutor(ConfigurationSection config) {
+        int threads = config != null ? Math.max(1, config.getInt("threads", 4)) : 4;
+        int queueSize = config != null ? Math.max(1, config.getInt("queue-size", 256)) : 256;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(config != null ? config.getLong("query-timeout-seconds", 10L) : 10L);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "EasyStats-API-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(QueryContext.CachePolicy cachePolicy, Supplier<T> task) {
+        Task<T> runnable = new Task<>(new QueryContext(timeoutMillis, cachePolicy), task);
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            runnable.future.completeExceptionally(e);
+        }
+        return runnable.future;
+    }
+
+    // Runs query on the calling thread from the cache alone; null when it would have had to load something
+    public <T> CompletableFuture<T> runCached(Supplier<T> query) {
+        QueryContext context = new QueryContext(timeoutMillis, QueryContext.CachePolicy.ONLY);
+        try {
+            T result = context.run(query);
+            if (context.isCacheMissed()) {
+                return null;
+            }
+            cachedHits.increment();
+            return CompletableFuture.completedFuture(result);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getCachedHitCount() {
+        return cachedHits.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public double getAverageRunMillis() {
+        long tasks = completed.sum() + failed.sum();
+        return tasks > 0 ? runNanos.sum() / 1_000_000.0 / tasks : 0.0;
+    }
+
+    public void shutdown() {
+        for (Runnable pending : executor.shutdownNow()) {
+            ((Task<?>) pending).future.completeExceptionally(new RejectedExecutionException("EasyStats is shutting down"));
+        }
+    }
+
+    private final class Task<T> implements Runnable {
+        private final QueryContext context;
+        private final Supplier<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(QueryContext context, Supplier<T> task) {
+            this.context = context;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                T result = context.run(task);
+                // Only set when a statement was refused at the deadline; a result that is here counts as completed
+                if (context.isTimedOut()) {
+                    failed.increment();
+                    future.completeExceptionally(new TimeoutException("Query took longer than " + timeoutMillis + " ms"));
+                } else {
+                    completed.increment();
+                    future.complete(result);
+                }
+            } catch (RuntimeException e) {
+                failed.increment();
+                future.completeExceptionally(e);
+            } finally {
+                runNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+}
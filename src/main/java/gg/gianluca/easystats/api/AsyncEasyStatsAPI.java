@@ -0,0 +1,46 @@
+package gg.gianluca.easystats.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Non-blocking counterpart of EasyStatsAPI. Futures complete on the EasyStats I/O threads (or on the calling
+// thread for SYNC_CACHED hits), never on the main thread, so callbacks that touch the Bukkit API have to hop back
+// with the scheduler. When the executor is saturated the future fails with a RejectedExecutionException.
+public interface AsyncEasyStatsAPI {
+    // Platform Statistics
+    CompletableFuture<Map<String, Long>> getPlatformStats(String platform, String timeFilter, ReadConsistency consistency);
+    CompletableFuture<Map<String, Long>> comparePlatforms(String platform1, String platform2, ReadConsistency consistency);
+
+    // Country Statistics
+    CompletableFuture<Map<String, Map<String, Map<String, Long>>>> getCountryStats(String platform, String timeFilter, ReadConsistency consistency);
+    CompletableFuture<Map<String, Map<String, Map<String, Long>>>> compareCountries(String platform1, String platform2, ReadConsistency consistency);
+
+    // Revenue Statistics
+    CompletableFuture<Map<String, Double>> getRevenueStats(String platform, String timeFilter, ReadConsistency consistency);
+    CompletableFuture<Map<String, Double>> compareRevenue(String platform1, String platform2, ReadConsistency consistency);
+    CompletableFuture<Void> addRevenue(String platform, double amount, String currency);
+
+    // Campaign Management
+    CompletableFuture<Void> createCampaign(String name, String description, String startDate, String endDate, String currency, double cost);
+    CompletableFuture<Map<String, Object>> getCampaign(String name, ReadConsistency consistency);
+    CompletableFuture<Map<String, Object>> getCampaignMetrics(String name, ReadConsistency consistency);
+    CompletableFuture<List<Map<String, Object>>> getAllCampaigns();
+    CompletableFuture<Void> endCampaign(String name);
+    CompletableFuture<Boolean> addHostnameToCampaign(String name, String hostname);
+    CompletableFuture<Boolean> removeHostnameFromCampaign(String name, String hostname);
+    CompletableFuture<List<String>> getCampaignHostnames(String name);
+
+    // Session Statistics (kept in memory, these complete immediately)
+    CompletableFuture<Double> getAverageSessionTime(String hostname);
+    CompletableFuture<Map<String, Double>> compareSessionTimes(String hostname1, String hostname2);
+    CompletableFuture<Map<String, Long>> getSessionPercentiles(String hostname);
+    CompletableFuture<Map<String, Long>> getSessionWindowStats(String hostname, String window);
+    CompletableFuture<Void> startSession(UUID playerId, String hostname);
+    CompletableFuture<Void> endSession(UUID playerId, String hostname);
+
+    // Player Count Statistics
+    CompletableFuture<Map<String, Object>> getPlayerCountStats(String platform, ReadConsistency consistency);
+    CompletableFuture<Map<String, Object>> getGlobalPlayerCountStats(ReadConsistency consistency);
+}
@@ -0,0 +1,160 @@
+package gg.gianluca.easystats.api;
+
+import gg.gianluca.easystats.data.QueryContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Runs the blocking API on the I/O executor; reads pick the cache policy from the requested consistency
+public class AsyncEasyStatsAPIImpl implements AsyncEasyStatsAPI {
+    private final EasyStatsAPI api;
+    private final ApiExecutor executor;
+
+    public AsyncEasyStatsAPIImpl(EasyStatsAPI api, ApiExecutor executor) {
+        this.api = api;
+        this.executor = executor;
+    }
+
+    // Only for reads that go through the query cache or the live totals, anything else would be refused by SYNC_CACHED
+    private <T> CompletableFuture<T> read(ReadConsistency consistency, Supplier<T> query) {
+        if (consistency == ReadConsistency.SYNC_CACHED) {
+            CompletableFuture<T> cached = executor.runCached(query);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return executor.submit(consistency == ReadConsistency.ASYNC_FRESH ? QueryContext.CachePolicy.REFRESH : QueryContext.CachePolicy.USE, query);
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> query) {
+        return executor.submit(QueryContext.CachePolicy.USE, query);
+    }
+
+    private CompletableFuture<Void> write(Runnable write) {
+        return executor.submit(QueryContext.CachePolicy.USE, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> getPlatformStats(String platform, String timeFilter, ReadConsistency consistency) {
+        return read(consistency, () -> api.getPlatformStats(platform, timeFilter));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> comparePlatforms(String platform1, String platform2, ReadConsistency consistency) {
+        return read(consistency, () -> api.comparePlatforms(platform1, platform2));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Map<String, Map<String, Long>>>> getCountryStats(String platform, String timeFilter, ReadConsistency consistency) {
+        return read(consistency, () -> api.getCountryStats(platform, timeFilter));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Map<String, Map<String, Long>>>> compareCountries(String platform1, String platform2, ReadConsistency consistency) {
+        return read(consistency, () -> api.compareCountries(platform1, platform2));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> getRevenueStats(String platform, String timeFilter, ReadConsistency consistency) {
+        return read(consistency, () -> api.getRevenueStats(platform, timeFilter));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> compareRevenue(String platform1, String platform2, ReadConsistency consistency) {
+        return read(consistency, () -> api.compareRevenue(platform1, platform2));
+    }
+
+    @Override
+    public CompletableFuture<Void> addRevenue(String platform, double amount, String currency) {
+        return write(() -> api.addRevenue(platform, amount, currency));
+    }
+
+    @Override
+    public CompletableFuture<Void> createCampaign(String name, String description, String startDate, String endDate, String currency, double cost) {
+        return write(() -> api.createCampaign(name, description, startDate, endDate, currency, cost));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getCampaign(String name, ReadConsistency consistency) {
+        return read(consistency, () -> api.getCampaign(name));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getCampaignMetrics(String name, ReadConsistency consistency) {
+        return read(consistency, () -> api.getCampaignMetrics(name));
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> getAllCampaigns() {
+        return call(api::getAllCampaigns);
+    }
+
+    @Override
+    public CompletableFuture<Void> endCampaign(String name) {
+        return write(() -> api.endCampaign(name));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addHostnameToCampaign(String name, String hostname) {
+        return call(() -> api.addHostnameToCampaign(name, hostname));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeHostnameFromCampaign(String name, String hostname) {
+        return call(() -> api.removeHostnameFromCampaign(name, hostname));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getCampaignHostnames(String name) {
+        return call(() -> api.getCampaignHostnames(name));
+    }
+
+    @Override
+    public CompletableFuture<Double> getAverageSessionTime(String hostname) {
+        return CompletableFuture.completedFuture(api.getAverageSessionTime(hostname));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Double>> compareSessionTimes(String hostname1, String hostname2) {
+        return CompletableFuture.completedFuture(api.compareSessionTimes(hostname1, hostname2));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> getSessionPercentiles(String hostname) {
+        return CompletableFuture.completedFuture(api.getSessionPercentiles(hostname));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> getSessionWindowStats(String hostname, String window) {
+        return CompletableFuture.completedFuture(api.getSessionWindowStats(hostname, window));
+    }
+
+    @Override
+    public CompletableFuture<Void> startSession(UUID playerId, String hostname) {
+        // The journal write is queued, so nothing here blocks
+        api.startSession(playerId, hostname);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> endSession(UUID playerId, String hostname) {
+        api.endSession(playerId, hostname);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getPlayerCountStats(String platform, ReadConsistency consistency) {
+        return read(consistency, () -> api.getPlayerCountStats(platform));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getGlobalPlayerCountStats(ReadConsistency consistency) {
+        return read(consistency, api::getGlobalPlayerCountStats);
+    }
+}
@@ -21,6 +21,8 @@ public interface EasyStatsAPI {
     // Campaign Management
     void createCampaign(String name, String description, String startDate, String endDate, String currency, double cost);
     Map<String, Object> getCampaign(String name);
+    // total_joins, unique_players and revenue over the campaign's dates
+    Map<String, Object> getCampaignMetrics(String name);
     List<Map<String, Object>> getAllCampaigns();
     void endCampaign(String name);
     boolean addHostnameToCampaign(String name, String hostname);
@@ -30,6 +32,9 @@ public interface EasyStatsAPI {
     // Session Statistics
     double getAverageSessionTime(String hostname);
     Map<String, Double> compareSessionTimes(String hostname1, String hostname2);
+    Map<String, Long> getSessionPercentiles(String hostname);
+    // window is 1h, 24h or 7d; empty for anything else
+    Map<String, Long> getSessionWindowStats(String hostname, String window);
     void startSession(UUID playerId, String hostname);
     void endSession(UUID playerId, String hostname);
 
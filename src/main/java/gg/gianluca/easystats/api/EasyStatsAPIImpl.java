@@ -3,11 +3,12 @@ package gg.gianluca.easystats.api;
 import gg.gianluca.easystats.EasyStats;
 import gg.gianluca.easystats.data.DataManager;
 import gg.gianluca.easystats.session.SessionManager;
+import gg.gianluca.easystats.session.SessionWindow;
+import gg.gianluca.easystats.util.Formats;
 
 import java.util.Map;
 import java.util.List;
 import java.util.UUID;
-import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -17,15 +18,11 @@ public class EasyStatsAPIImpl implements EasyStatsAPI {
     private final EasyStats plugin;
     private final DataManager dataManager;
     private final SessionManager sessionManager;
-    private final DecimalFormat numberFormat;
-    private final DecimalFormat percentageFormat;
 
     public EasyStatsAPIImpl(EasyStats plugin) {
         this.plugin = plugin;
         this.dataManager = plugin.getDataManager();
         this.sessionManager = plugin.getSessionManager();
-        this.numberFormat = new DecimalFormat("#,##0.00");
-        this.percentageFormat = new DecimalFormat("#,##0.00%");
     }
 
     @Override
@@ -166,6 +163,11 @@ public class EasyStatsAPIImpl implements EasyStatsAPI {
         return dataManager.getCampaign(name);
     }
 
+    @Override
+    public Map<String, Object> getCampaignMetrics(String name) {
+        return dataManager.getCampaignMetrics(name);
+    }
+
     @Override
     public List<Map<String, Object>> getAllCampaigns() {
         return dataManager.getAllCampaigns();
@@ -211,6 +213,17 @@ public class EasyStatsAPIImpl implements EasyStatsAPI {
         return sessionManager.compareSessionTimes(hostname1, hostname2);
     }
 
+    @Override
+    public Map<String, Long> getSessionPercentiles(String hostname) {
+        return sessionManager.getSessionPercentiles(hostname);
+    }
+
+    @Override
+    public Map<String, Long> getSessionWindowStats(String hostname, String window) {
+        SessionWindow sessionWindow = SessionWindow.fromString(window);
+        return sessionWindow != null ? sessionManager.getSessionWindowStats(hostname, sessionWindow) : Map.of();
+    }
+
     @Override
     public void startSession(UUID playerId, String hostname) {
         sessionManager.startSession(playerId, hostname);
@@ -223,29 +236,17 @@ public class EasyStatsAPIImpl implements EasyStatsAPI {
 
     @Override
     public String formatDuration(long milliseconds) {
-        long seconds = milliseconds / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        minutes %= 60;
-        seconds %= 60;
-
-        if (hours > 0) {
-            return String.format("%dh %dm %ds", hours, minutes, seconds);
-        } else if (minutes > 0) {
-            return String.format("%dm %ds", minutes, seconds);
-        } else {
-            return String.format("%ds", seconds);
-        }
+        return Formats.formatDuration(milliseconds);
     }
 
     @Override
     public String formatNumber(double number) {
-        return numberFormat.format(number);
+        return Formats.formatNumber(number);
     }
 
     @Override
     public String formatPercentage(double percentage) {
-        return percentageFormat.format(percentage / 100.0);
+        return Formats.formatPercentage(percentage);
     }
 
     private long calculatePercentage(long value1, long value2) {
@@ -255,11 +256,11 @@ public class EasyStatsAPIImpl implements EasyStatsAPI {
 
     @Override
     public Map<String, Object> getPlayerCountStats(String platform) {
-        return plugin.getDataManager().getPlayerCountStats(platform);
+        return dataManager.getPlayerCountStats(platform);
     }
 
     @Override
     public Map<String, Object> getGlobalPlayerCountStats() {
-        return plugin.getDataManager().getPlayerCountStats("global");
+        return dataManager.getGlobalPlayerCountStats();
     }
 } 
\ No newline at end of file
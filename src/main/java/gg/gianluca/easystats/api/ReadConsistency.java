@@ -0,0 +1,10 @@
+package gg.gianluca.easystats.api;
+
+public enum ReadConsistency {
+    // Completes on the calling thread when the result is cached or counted in memory, otherwise behaves like ASYNC_CACHED
+    SYNC_CACHED,
+    // Loads on the I/O executor, serving from the cache when it holds the result
+    ASYNC_CACHED,
+    // Loads on the I/O executor from the database, bypassing and then refreshing the cache
+    ASYNC_FRESH
+}
@@ -0,0 +1,72 @@
+package gg.gianluca.easystats.client;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+// Java vs Bedrock, decided once per connection at pre-login and remembered until the player quits. Floodgate is
+// an optional dependency, so its API is looked up once into a method handle bound to the API instance instead
+// of being resolved reflectively on every join.
+public class ClientTypeDetector {
+    public static final String JAVA = "java";
+    public static final String BEDROCK = "bedrock";
+    static final String FLOODGATE_API = "org.geysermc.floodgate.api.FloodgateApi";
+
+    private final Logger logger;
+    // (UUID)boolean, or null when Floodgate isn't installed
+    private final MethodHandle isFloodgatePlayer;
+    private final Map<UUID, String> clientTypes = new ConcurrentHashMap<>();
+
+    public ClientTypeDetector(Logger logger, boolean floodgateEnabled) {
+        this.logger = logger;
+        this.isFloodgatePlayer = floodgateEnabled ? resolveFloodgate() : null;
+    }
+
+    private MethodHandle resolveFloodgate() {
+        try {
+            Class<?> api = Class.forName(FLOODGATE_API);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Object instance = lookup.findStatic(api, "getInstance", MethodType.methodType(api)).invoke();
+            return lookup.findVirtual(api, "isFloodgatePlayer", MethodType.methodType(boolean.class, UUID.class)).bindTo(instance);
+        } catch (Throwable e) {
+            logger.warning("Failed to hook into the Floodgate API, all players will count as Java: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isAvailable() {
+        return isFloodgatePlayer != null;
+    }
+
+    // Asks Floodgate and remembers the answer; meant for pre-login, when the connection is first seen
+    public String detect(UUID playerId) {
+        String clientType = query(playerId);
+        clientTypes.put(playerId, clientType);
+        return clientType;
+    }
+
+    public String getClientType(UUID playerId) {
+        String clientType = clientTypes.get(playerId);
+        return clientType != null ? clientType : detect(playerId);
+    }
+
+    public void forget(UUID playerId) {
+        clientTypes.remove(playerId);
+    }
+
+    private String query(UUID playerId) {
+        if (isFloodgatePlayer == null) {
+            return JAVA;
+        }
+        try {
+            return (boolean) isFloodgatePlayer.invokeExact(playerId) ? BEDROCK : JAVA;
+        } catch (Throwable e) {
+            logger.warning("Failed to check player platform type: " + e.getMessage());
+            return JAVA;
+        }
+    }
+}
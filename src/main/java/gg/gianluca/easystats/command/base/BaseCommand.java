@@ -1,24 +1,31 @@
 package gg.gianluca.easystats.command.base;
 
 import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.data.TimeRange;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public abstract class BaseCommand implements CommandExecutor, TabCompleter {
     protected final EasyStats plugin;
     protected final String permission;
     protected final String usage;
     protected final String description;
+    // "countries" for "/easystats countries ...", the key of per-command settings such as query timeouts
+    protected final String name;
 
     public BaseCommand(EasyStats plugin, String permission, String usage, String description) {
         this.plugin = plugin;
         this.permission = permission;
         this.usage = usage;
         this.description = description;
+        String[] words = usage.split(" ");
+        this.name = words.length > 1 ? words[1] : words[0].replace("/", "");
     }
 
     @Override
@@ -38,9 +45,31 @@ public abstract class BaseCommand implements CommandExecutor, TabCompleter {
         return tabComplete(sender, command, alias, args);
     }
 
+    protected boolean isValidTimeFilter(CommandSender sender, String timeFilter) {
+        if (timeFilter == null) {
+            return true;
+        }
+        try {
+            TimeRange.parseDuration(timeFilter);
+            return true;
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage("§c" + e.getMessage() + " (use e.g. 30m, 12h, 7d or 2w)");
+            return false;
+        }
+    }
+
+    // Runs query on the command pool and render back on the main thread, so a slow query never holds up a tick
+    protected <T> void query(CommandSender sender, Supplier<T> query, Consumer<T> render) {
+        plugin.getCommandQueryExecutor().submit(sender, name, query, render);
+    }
+
     public abstract boolean execute(CommandSender sender, Command command, String label, String[] args);
     public abstract List<String> tabComplete(CommandSender sender, Command command, String alias, String[] args);
 
+    public String getName() {
+        return name;
+    }
+
     public String getPermission() {
         return permission;
     }
@@ -0,0 +1,149 @@
+package gg.gianluca.easystats.command.base;
+
+import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.data.QueryContext;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Runs the query phase of commands on a small bounded pool and hands the result back to the main thread for
+// rendering. Every submission gets a QueryContext with the command's timeout, a watchdog that cancels it once the
+// deadline passes, and a "still working" notice if it is slow. A player's queries are cancelled when they quit.
+@SuppressWarnings("deprecation")
+public class CommandQueryExecutor {
+    private final EasyStats plugin;
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+    private final Map<String, Long> timeouts = new HashMap<>();
+    private final long noticeTicks;
+    private final Map<UUID, Set<QueryContext>> running = new ConcurrentHashMap<>();
+
+    public CommandQueryExecutor(EasyStats plugin, ConfigurationSection config) {
+        this.plugin = plugin;
+        int threads = config != null ? Math.max(1, config.getInt("threads", 2)) : 2;
+        int queueSize = config != null ? Math.max(1, config.getInt("queue-size", 32)) : 32;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "EasyStats-Command-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.defaultTimeoutMillis = TimeUnit.SECONDS.toMillis(config != null ? config.getLong("query-timeout-seconds.default", 10L) : 10L);
+        ConfigurationSection timeoutSection = config != null ? config.getConfigurationSection("query-timeout-seconds") : null;
+        if (timeoutSection != null) {
+            for (String name : timeoutSection.getKeys(false)) {
+                timeouts.put(name, TimeUnit.SECONDS.toMillis(timeoutSection.getLong(name)));
+            }
+        }
+        this.noticeTicks = Math.max(1L, (config != null ? config.getLong("slow-notice-ms", 2000L) : 2000L) / 50L);
+    }
+
+    public <T> void submit(CommandSender sender, String command, Supplier<T> query, Consumer<T> render) {
+        long timeout = timeouts.getOrDefault(command, defaultTimeoutMillis);
+        QueryContext context = new QueryContext(timeout);
+        UUID playerId = sender instanceof Player ? ((Player) sender).getUniqueId() : null;
+        if (playerId != null) {
+            running.computeIfAbsent(playerId, k -> ConcurrentHashMap.newKeySet()).add(context);
+        }
+
+        BukkitTask notice = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            if (!context.isCancelled() && !context.isTimedOut()) {
+                sender.sendMessage(ChatColor.GRAY + "Still working on it...");
+            }
+        }, noticeTicks);
+        BukkitTask watchdog = Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, context::expire, Math.max(1L, timeout / 50L));
+
+        try {
+            executor.execute(() -> {
+                T result = null;
+                boolean failed = false;
+                try {
+                    result = context.run(query);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().severe("Failed to run " + command + " command query: " + e.getMessage());
+                    failed = true;
+                } finally {
+                    watchdog.cancel();
+                    untrack(playerId, context);
+                }
+                T finalResult = result;
+                boolean finalFailed = failed;
+                if (plugin.isEnabled()) {
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        notice.cancel();
+                        complete(sender, context, timeout, finalFailed, finalResult, render);
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            notice.cancel();
+            watchdog.cancel();
+            untrack(playerId, context);
+            sender.sendMessage(ChatColor.RED + "EasyStats is busy with other queries, try again in a moment.");
+        }
+    }
+
+    private <T> void complete(CommandSender sender, QueryContext context, long timeout, boolean failed, T result, Consumer<T> render) {
+        if (context.isCancelled() || (sender instanceof Player && !((Player) sender).isOnline())) {
+            return;
+        }
+        if (context.isTimedOut()) {
+            sender.sendMessage(ChatColor.RED + "The query took longer than " + TimeUnit.MILLISECONDS.toSeconds(timeout) + "s and was cancelled.");
+            return;
+        }
+        if (failed) {
+            sender.sendMessage(ChatColor.RED + "Failed to load the statistics, check the console for details.");
+            return;
+        }
+        render.accept(result);
+    }
+
+    private void untrack(UUID playerId, QueryContext context) {
+        if (playerId != null) {
+            running.computeIfPresent(playerId, (k, contexts) -> {
+                contexts.remove(context);
+                return contexts.isEmpty() ? null : contexts;
+            });
+        }
+    }
+
+    public void cancel(UUID playerId) {
+        Set<QueryContext> contexts = running.remove(playerId);
+        if (contexts != null) {
+            contexts.forEach(QueryContext::cancel);
+        }
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        for (Set<QueryContext> contexts : running.values()) {
+            contexts.forEach(QueryContext::cancel);
+        }
+        running.clear();
+        executor.shutdownNow();
+    }
+}
@@ -33,7 +33,7 @@ public class CampaignCommand extends BaseCommand {
 
         switch (subcommand) {
             case "create":
-                if (args.length < 6) {
+                if (args.length < 7) {
                     sender.sendMessage(ChatColor.RED + "Usage: /easystats campaign create <name> <description> <start_date> <end_date> <currency> <cost>");
                     return true;
                 }
@@ -82,12 +82,10 @@ public class CampaignCommand extends BaseCommand {
     }
 
     private void handleCreate(CommandSender sender, String name, String description, String startDate, String endDate, String currency, double cost) {
-        try {
+        query(sender, () -> {
             dataManager.createCampaign(name, description, startDate, endDate, currency, cost);
-            sender.sendMessage(ChatColor.GREEN + "Campaign '" + name + "' created successfully!");
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Failed to create campaign: " + e.getMessage());
-        }
+            return name;
+        }, created -> sender.sendMessage(ChatColor.GREEN + "Campaign '" + created + "' created successfully!"));
     }
 
     private void handleView(CommandSender sender, String[] args) {
@@ -98,28 +96,38 @@ public class CampaignCommand extends BaseCommand {
 
         String name = args[2];
         String timeFilter = args.length > 3 ? args[3] : null;
-        Map<String, Object> campaign = dataManager.getCampaign(name);
-        
-        if (campaign == null) {
+        if (!isValidTimeFilter(sender, timeFilter)) {
+            return;
+        }
+        query(sender, () -> {
+            Map<String, Object> campaign = dataManager.getCampaign(name);
+            if (campaign == null) {
+                return null;
+            }
+            return new CampaignDetails(campaign, dataManager.getCampaignMetrics(name),
+                    dataManager.getCampaignJoinStats(name, timeFilter), dataManager.getCampaignHostnames(name));
+        }, details -> sendView(sender, name, details));
+    }
+
+    private void sendView(CommandSender sender, String name, CampaignDetails details) {
+        if (details == null) {
             sender.sendMessage(ChatColor.RED + "Campaign not found: " + name);
             return;
         }
 
-        // Get campaign metrics
-        Map<String, Object> metrics = dataManager.getCampaignMetrics(name);
-        double cost = ((Number) metrics.getOrDefault("cost", 0.0)).doubleValue();
+        Map<String, Object> campaign = details.campaign();
+        Map<String, Object> metrics = details.metrics();
+        double cost = ((Number) campaign.get("budget")).doubleValue();
         double revenue = ((Number) metrics.getOrDefault("revenue", 0.0)).doubleValue();
         double profit = revenue - cost;
         double roi = cost > 0 ? (profit / cost) * 100 : 0;
 
-        // Get campaign join stats
-        Map<String, Long> joinStats = dataManager.getCampaignJoinStats(name, timeFilter);
+        Map<String, Long> joinStats = details.joinStats();
         long totalJoins = joinStats.getOrDefault("total", 0L);
         long javaJoins = joinStats.getOrDefault("java", 0L);
         long bedrockJoins = joinStats.getOrDefault("bedrock", 0L);
 
-        // Get campaign hostnames
-        List<String> hostnames = dataManager.getCampaignHostnames(name);
+        List<String> hostnames = details.hostnames();
 
         // Format dates
         String startDate = campaign.get("start_date").toString();
@@ -146,7 +154,10 @@ public class CampaignCommand extends BaseCommand {
     }
 
     private void handleList(CommandSender sender) {
-        List<Map<String, Object>> campaigns = dataManager.getAllCampaigns();
+        query(sender, dataManager::getAllCampaigns, campaigns -> sendList(sender, campaigns));
+    }
+
+    private void sendList(CommandSender sender, List<Map<String, Object>> campaigns) {
         if (campaigns.isEmpty()) {
             sender.sendMessage(ChatColor.YELLOW + "No campaigns found.");
             return;
@@ -167,40 +178,37 @@ public class CampaignCommand extends BaseCommand {
     }
 
     private void handleEnd(CommandSender sender, String campaignName) {
-        try {
+        query(sender, () -> {
             dataManager.endCampaign(campaignName);
-            sender.sendMessage(ChatColor.GREEN + "Campaign '" + campaignName + "' ended successfully!");
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Failed to end campaign: " + e.getMessage());
-        }
+            return campaignName;
+        }, ended -> sender.sendMessage(ChatColor.GREEN + "Campaign '" + ended + "' ended successfully!"));
     }
 
     private void handleAddHostname(CommandSender sender, String campaignName, String hostname) {
-        try {
-            if (dataManager.addHostnameToCampaign(campaignName, hostname)) {
+        query(sender, () -> dataManager.addHostnameToCampaign(campaignName, hostname), added -> {
+            if (added) {
                 sender.sendMessage(ChatColor.GREEN + "Added hostname '" + hostname + "' to campaign '" + campaignName + "'");
             } else {
                 sender.sendMessage(ChatColor.RED + "Failed to add hostname. Campaign may not exist or hostname is already added.");
             }
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Failed to add hostname: " + e.getMessage());
-        }
+        });
     }
 
     private void handleRemoveHostname(CommandSender sender, String campaignName, String hostname) {
-        try {
-            if (dataManager.removeHostnameFromCampaign(campaignName, hostname)) {
+        query(sender, () -> dataManager.removeHostnameFromCampaign(campaignName, hostname), removed -> {
+            if (removed) {
                 sender.sendMessage(ChatColor.GREEN + "Removed hostname '" + hostname + "' from campaign '" + campaignName + "'");
             } else {
                 sender.sendMessage(ChatColor.RED + "Failed to remove hostname. Campaign or hostname may not exist.");
             }
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Failed to remove hostname: " + e.getMessage());
-        }
+        });
     }
 
     private void handleListHostnames(CommandSender sender, String campaignName) {
-        List<String> hostnames = dataManager.getCampaignHostnames(campaignName);
+        query(sender, () -> dataManager.getCampaignHostnames(campaignName), hostnames -> sendHostnames(sender, campaignName, hostnames));
+    }
+
+    private void sendHostnames(CommandSender sender, String campaignName, List<String> hostnames) {
         if (hostnames.isEmpty()) {
             sender.sendMessage(ChatColor.YELLOW + "No hostnames found for campaign '" + campaignName + "'");
             return;
@@ -219,13 +227,20 @@ public class CampaignCommand extends BaseCommand {
         }
 
         String name = args[1];
-        Map<String, Object> campaign = dataManager.getCampaign(name);
-        if (campaign == null) {
+        query(sender, () -> {
+            Map<String, Object> campaign = dataManager.getCampaign(name);
+            return campaign != null ? new CampaignDetails(campaign, dataManager.getCampaignMetrics(name), null, null) : null;
+        }, details -> sendInfo(sender, details));
+    }
+
+    private void sendInfo(CommandSender sender, CampaignDetails details) {
+        if (details == null) {
             sender.sendMessage(ChatColor.RED + "Campaign not found.");
             return;
         }
 
-        Map<String, Object> metrics = dataManager.getCampaignMetrics(name);
+        Map<String, Object> campaign = details.campaign();
+        Map<String, Object> metrics = details.metrics();
         sender.sendMessage(ChatColor.GREEN + "Campaign Information:");
         sender.sendMessage(ChatColor.YELLOW + "Name: " + campaign.get("name"));
         sender.sendMessage(ChatColor.YELLOW + "Description: " + campaign.get("description"));
@@ -245,8 +260,8 @@ public class CampaignCommand extends BaseCommand {
 
         String name = args[1];
         String hostname = args[2];
-        dataManager.addHostnameToCampaign(name, hostname);
-        sender.sendMessage(ChatColor.GREEN + "Successfully added hostname to campaign.");
+        query(sender, () -> dataManager.addHostnameToCampaign(name, hostname),
+                added -> sender.sendMessage(ChatColor.GREEN + "Successfully added hostname to campaign."));
     }
 
     private void handleRemoveHost(CommandSender sender, String[] args) {
@@ -257,8 +272,8 @@ public class CampaignCommand extends BaseCommand {
 
         String name = args[1];
         String hostname = args[2];
-        dataManager.removeHostnameFromCampaign(name, hostname);
-        sender.sendMessage(ChatColor.GREEN + "Successfully removed hostname from campaign.");
+        query(sender, () -> dataManager.removeHostnameFromCampaign(name, hostname),
+                removed -> sender.sendMessage(ChatColor.GREEN + "Successfully removed hostname from campaign."));
     }
 
     private void sendHelp(CommandSender sender) {
@@ -282,4 +297,9 @@ public class CampaignCommand extends BaseCommand {
         }
         return null;
     }
-} 
\ No newline at end of file
+
+    // Everything a campaign view needs, loaded together on the command pool
+    private record CampaignDetails(Map<String, Object> campaign, Map<String, Object> metrics,
+                                   Map<String, Long> joinStats, List<String> hostnames) {
+    }
+}
@@ -2,6 +2,7 @@ package gg.gianluca.easystats.command.subcommands;
 
 import gg.gianluca.easystats.EasyStats;
 import gg.gianluca.easystats.command.base.BaseCommand;
+import gg.gianluca.easystats.country.CountryTiers;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -24,11 +25,18 @@ public class CountriesCommand extends BaseCommand {
 
         String platform = args[1];
         String timeFilter = args.length > 3 && args[2].equals("-t") ? args[3] : null;
+        if (!isValidTimeFilter(sender, timeFilter)) {
+            return true;
+        }
+
+        query(sender, () -> plugin.getDataManager().getCountryStats(platform, timeFilter), countryStats -> sendStats(sender, platform, countryStats));
+        return true;
+    }
 
-        Map<String, Map<String, Map<String, Long>>> countryStats = plugin.getDataManager().getCountryStats(platform, timeFilter);
+    private void sendStats(CommandSender sender, String platform, Map<String, Map<String, Map<String, Long>>> countryStats) {
         if (countryStats.isEmpty()) {
             sender.sendMessage(ChatColor.RED + "No statistics available for platform: " + platform);
-            return true;
+            return;
         }
 
         sender.sendMessage(ChatColor.GOLD + "=== Country Statistics for " + platform + " ===");
@@ -46,12 +54,10 @@ public class CountriesCommand extends BaseCommand {
                 double javaPercent = total > 0 ? (javaCount * 100.0) / total : 0;
                 double bedrockPercent = total > 0 ? (bedrockCount * 100.0) / total : 0;
 
-                sender.sendMessage(ChatColor.WHITE + country + ": " + total + " players " +
+                sender.sendMessage(ChatColor.WHITE + CountryTiers.getDisplayName(country) + " (" + country + "): " + total + " players " +
                         String.format("(Java: %.1f%%, Bedrock: %.1f%%)", javaPercent, bedrockPercent));
             }
         }
-
-        return true;
     }
 
     @Override
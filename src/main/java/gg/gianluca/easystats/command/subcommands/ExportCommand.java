@@ -37,6 +37,18 @@ public class ExportCommand extends BaseCommand {
         }
 
         String hostname = args[1];
+        query(sender, () -> export(hostname), fileName -> {
+            if (fileName != null) {
+                sender.sendMessage(ChatColor.GREEN + "Statistics exported to " + fileName);
+            } else {
+                sender.sendMessage(ChatColor.RED + "Failed to export statistics, check the console for details.");
+            }
+        });
+        return true;
+    }
+
+    // Runs on the command pool, file included; returns the file name or null if writing it failed
+    private String export(String hostname) {
         Map<String, Object> stats = new HashMap<>();
 
         // Get platform stats
@@ -74,13 +86,11 @@ public class ExportCommand extends BaseCommand {
             String fileName = "stats_" + hostname + "_" + System.currentTimeMillis() + ".json";
             File file = new File(plugin.getDataFolder(), fileName);
             Files.write(file.toPath(), json.getBytes());
-            sender.sendMessage(ChatColor.GREEN + "Statistics exported to " + fileName);
+            return fileName;
         } catch (IOException e) {
-            sender.sendMessage(ChatColor.RED + "Failed to export statistics: " + e.getMessage());
             plugin.getLogger().severe("Failed to export statistics: " + e.getMessage());
+            return null;
         }
-
-        return true;
     }
 
     @Override
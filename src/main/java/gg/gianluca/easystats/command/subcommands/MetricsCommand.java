@@ -0,0 +1,78 @@
+package gg.gianluca.easystats.command.subcommands;
+
+import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.api.ApiExecutor;
+import gg.gianluca.easystats.command.base.BaseCommand;
+import gg.gianluca.easystats.command.base.CommandQueryExecutor;
+import gg.gianluca.easystats.data.DataManager;
+import gg.gianluca.easystats.data.QueryCache;
+import gg.gianluca.easystats.data.WriteBehindQueue;
+import gg.gianluca.easystats.util.GeoIPManager;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("deprecation")
+public class MetricsCommand extends BaseCommand {
+    private final DataManager dataManager;
+
+    public MetricsCommand(EasyStats plugin) {
+        super(plugin, "easystats.metrics", "/easystats metrics", "Show cache, write queue and GeoIP metrics");
+        this.dataManager = plugin.getDataManager();
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, Command command, String label, String[] args) {
+        QueryCache cache = dataManager.getQueryCache();
+        sender.sendMessage(ChatColor.GOLD + "=== EasyStats Metrics ===");
+        sender.sendMessage(ChatColor.YELLOW + "Query cache: " + ChatColor.WHITE + cache.size() + "/" + cache.getMaxEntries() +
+                " entries, " + cache.getEvictions() + " evictions, " + cache.getInvalidations() + " invalidations");
+        for (Map.Entry<String, long[]> entry : cache.getHitMissCounts().entrySet()) {
+            long hits = entry.getValue()[0];
+            long misses = entry.getValue()[1];
+            long lookups = hits + misses;
+            String ratio = lookups > 0 ? String.format("%.1f", hits * 100.0 / lookups) : "0.0";
+            sender.sendMessage(ChatColor.GRAY + "  - " + entry.getKey() + ": " + ChatColor.WHITE +
+                    hits + " hits, " + misses + " misses (" + ratio + "%)");
+        }
+
+        long executions = cache.getLoadExecutions();
+        long shared = cache.getSharedLoads();
+        String saved = executions + shared > 0 ? String.format("%.1f", shared * 100.0 / (executions + shared)) : "0.0";
+        sender.sendMessage(ChatColor.YELLOW + "Query loads: " + ChatColor.WHITE + executions + " executed, " + shared +
+                " shared with a running query (" + saved + "% saved), " + cache.getLoadsInFlight() + " in flight");
+
+        WriteBehindQueue writeQueue = dataManager.getWriteQueue();
+        sender.sendMessage(ChatColor.YELLOW + "Write queue: " + ChatColor.WHITE + writeQueue.getPendingCount() +
+                " pending, " + writeQueue.getDroppedCount() + " dropped");
+
+        CommandQueryExecutor commandQueries = plugin.getCommandQueryExecutor();
+        sender.sendMessage(ChatColor.YELLOW + "Command queries: " + ChatColor.WHITE + commandQueries.getActiveCount() +
+                " running, " + commandQueries.getQueuedCount() + " queued");
+
+        ApiExecutor apiExecutor = plugin.getApiExecutor();
+        sender.sendMessage(ChatColor.YELLOW + "Async API: " + ChatColor.WHITE + apiExecutor.getActiveCount() + " running, " +
+                apiExecutor.getQueuedCount() + " queued, " + apiExecutor.getCompletedCount() + " completed, " +
+                apiExecutor.getFailedCount() + " failed, " + apiExecutor.getRejectedCount() + " rejected, " +
+                apiExecutor.getCachedHitCount() + " answered from cache, " +
+                String.format("%.1f", apiExecutor.getAverageRunMillis()) + " ms average");
+
+        GeoIPManager geoIP = plugin.getGeoIPManager();
+        long geoHits = geoIP.getCacheHits();
+        long geoLookups = geoHits + geoIP.getCacheMisses();
+        String geoRatio = geoLookups > 0 ? String.format("%.1f", geoHits * 100.0 / geoLookups) : "0.0";
+        sender.sendMessage(ChatColor.YELLOW + "GeoIP cache: " + ChatColor.WHITE + geoHits + " hits, " + geoIP.getCacheMisses() +
+                " misses (" + geoRatio + "%), " + geoIP.getCacheCapacity() + " slots, " +
+                String.format("%.1f", geoIP.getAverageLookupNanos() / 1000.0) + " µs per database lookup");
+        return true;
+    }
+
+    @Override
+    public List<String> tabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        return Collections.emptyList();
+    }
+}
@@ -37,6 +37,9 @@ public class PlatformCommand extends BaseCommand {
                     return true;
                 }
                 String timeFilter = args.length > 3 && args[2].equals("-t") ? args[3] : null;
+                if (!isValidTimeFilter(sender, timeFilter)) {
+                    return true;
+                }
                 handleView(sender, platform, timeFilter);
                 break;
             case "compare":
@@ -54,7 +57,10 @@ public class PlatformCommand extends BaseCommand {
     }
 
     private void handleView(CommandSender sender, String platform, String timeFilter) {
-        Map<String, Long> stats = dataManager.getPlatformStats(platform, timeFilter);
+        query(sender, () -> dataManager.getPlatformStats(platform, timeFilter), stats -> sendView(sender, platform, stats));
+    }
+
+    private void sendView(CommandSender sender, String platform, Map<String, Long> stats) {
         long total = stats.getOrDefault("total", 0L);
         long java = stats.getOrDefault("java", 0L);
         long bedrock = stats.getOrDefault("bedrock", 0L);
@@ -68,8 +74,11 @@ public class PlatformCommand extends BaseCommand {
     }
 
     private void handleCompare(CommandSender sender, String platform1, String platform2) {
-        Map<String, Long> stats1 = dataManager.getPlatformStats(platform1, null);
-        Map<String, Long> stats2 = dataManager.getPlatformStats(platform2, null);
+        query(sender, () -> List.of(dataManager.getPlatformStats(platform1, null), dataManager.getPlatformStats(platform2, null)),
+                stats -> sendCompare(sender, platform1, platform2, stats.get(0), stats.get(1)));
+    }
+
+    private void sendCompare(CommandSender sender, String platform1, String platform2, Map<String, Long> stats1, Map<String, Long> stats2) {
 
         long total1 = stats1.getOrDefault("total", 0L);
         long total2 = stats2.getOrDefault("total", 0L);
@@ -35,41 +35,47 @@ public class PlayerCountCommand extends BaseCommand {
         boolean showAll = args.length > 3 && args[3].equalsIgnoreCase("-all");
 
         if (showAll) {
-            // Show global player count stats
-            Map<String, Object> globalStats = dataManager.getGlobalPlayerCountStats();
-            sender.sendMessage("§6=== Global Player Count Statistics ===");
-            sender.sendMessage("§7Current Players: §f" + globalStats.get("current"));
-            sender.sendMessage("§7Average Players:");
-            Map<String, Integer> averages = (Map<String, Integer>) globalStats.get("averages");
-            sender.sendMessage("  §7- 24h: §f" + averages.get("24h"));
-            sender.sendMessage("  §7- 7d: §f" + averages.get("7d"));
-            sender.sendMessage("  §7- 14d: §f" + averages.get("14d"));
-            sender.sendMessage("  §7- 30d: §f" + averages.get("30d"));
-            sender.sendMessage("§7Peak Players: §f" + globalStats.get("peak_count"));
-            sender.sendMessage("§7Peak Time: §f" + globalStats.get("peak_time"));
+            query(sender, dataManager::getGlobalPlayerCountStats, globalStats -> sendGlobalStats(sender, globalStats));
         } else {
-            // Show platform-specific stats
-            Map<String, Object> stats = dataManager.getPlayerCountStats(platform);
-            if (stats == null) {
-                sender.sendMessage("§cNo statistics found for platform: " + platform);
-                return true;
-            }
-
-            sender.sendMessage("§6=== Player Count Statistics for " + platform + " ===");
-            sender.sendMessage("§7Current Players: §f" + stats.get("current"));
-            sender.sendMessage("§7Average Players:");
-            Map<String, Integer> averages = (Map<String, Integer>) stats.get("averages");
-            sender.sendMessage("  §7- 24h: §f" + averages.get("24h"));
-            sender.sendMessage("  §7- 7d: §f" + averages.get("7d"));
-            sender.sendMessage("  §7- 14d: §f" + averages.get("14d"));
-            sender.sendMessage("  §7- 30d: §f" + averages.get("30d"));
-            sender.sendMessage("§7Peak Players: §f" + stats.get("peak_count"));
-            sender.sendMessage("§7Peak Time: §f" + stats.get("peak_time"));
+            query(sender, () -> dataManager.getPlayerCountStats(platform), stats -> sendPlatformStats(sender, platform, stats));
         }
 
         return true;
     }
 
+    private void sendGlobalStats(CommandSender sender, Map<String, Object> globalStats) {
+        // Show global player count stats
+        sender.sendMessage("§6=== Global Player Count Statistics ===");
+        sender.sendMessage("§7Current Players: §f" + globalStats.get("current"));
+        sender.sendMessage("§7Average Players:");
+        Map<String, Integer> averages = (Map<String, Integer>) globalStats.get("averages");
+        sender.sendMessage("  §7- 24h: §f" + averages.get("24h"));
+        sender.sendMessage("  §7- 7d: §f" + averages.get("7d"));
+        sender.sendMessage("  §7- 14d: §f" + averages.get("14d"));
+        sender.sendMessage("  §7- 30d: §f" + averages.get("30d"));
+        sender.sendMessage("§7Peak Players: §f" + globalStats.get("peak_count"));
+        sender.sendMessage("§7Peak Time: §f" + globalStats.get("peak_time"));
+    }
+
+    private void sendPlatformStats(CommandSender sender, String platform, Map<String, Object> stats) {
+        // Show platform-specific stats
+        if (stats == null) {
+            sender.sendMessage("§cNo statistics found for platform: " + platform);
+            return;
+        }
+
+        sender.sendMessage("§6=== Player Count Statistics for " + platform + " ===");
+        sender.sendMessage("§7Current Players: §f" + stats.get("current"));
+        sender.sendMessage("§7Average Players:");
+        Map<String, Integer> averages = (Map<String, Integer>) stats.get("averages");
+        sender.sendMessage("  §7- 24h: §f" + averages.get("24h"));
+        sender.sendMessage("  §7- 7d: §f" + averages.get("7d"));
+        sender.sendMessage("  §7- 14d: §f" + averages.get("14d"));
+        sender.sendMessage("  §7- 30d: §f" + averages.get("30d"));
+        sender.sendMessage("§7Peak Players: §f" + stats.get("peak_count"));
+        sender.sendMessage("§7Peak Time: §f" + stats.get("peak_time"));
+    }
+
     @Override
     public List<String> tabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (!sender.hasPermission(getPermission())) {
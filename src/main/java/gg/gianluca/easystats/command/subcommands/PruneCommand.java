@@ -0,0 +1,59 @@
+package gg.gianluca.easystats.command.subcommands;
+
+import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.command.base.BaseCommand;
+import gg.gianluca.easystats.data.RetentionService;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("deprecation")
+public class PruneCommand extends BaseCommand {
+    public PruneCommand(EasyStats plugin) {
+        super(plugin, "easystats.prune", "/easystats prune [--dry-run]", "Delete data older than the retention periods");
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, Command command, String label, String[] args) {
+        boolean dryRun = args.length > 0 && args[0].equalsIgnoreCase("--dry-run");
+        RetentionService retentionService = plugin.getDataManager().getRetentionService();
+        if (retentionService.isRunning()) {
+            sender.sendMessage(ChatColor.RED + "A prune is already running, try again later.");
+            return true;
+        }
+
+        sender.sendMessage(ChatColor.YELLOW + (dryRun ? "Counting expired rows..." : "Pruning expired rows..."));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            RetentionService.Result result = retentionService.run(dryRun);
+            Bukkit.getScheduler().runTask(plugin, () -> sendResult(sender, result));
+        });
+        return true;
+    }
+
+    private void sendResult(CommandSender sender, RetentionService.Result result) {
+        if (result == null) {
+            sender.sendMessage(ChatColor.RED + "A prune is already running, try again later.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "=== " + (result.isDryRun() ? "Prune Dry Run" : "Prune Results") + " ===");
+        for (Map.Entry<String, Long> entry : result.getRows().entrySet()) {
+            sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ": " + ChatColor.WHITE + entry.getValue() + " rows");
+        }
+        sender.sendMessage(ChatColor.YELLOW + (result.isDryRun() ? "Would delete: " : "Deleted: ") + ChatColor.WHITE +
+                result.getTotal() + " rows in " + result.getDurationMillis() + " ms");
+    }
+
+    @Override
+    public List<String> tabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (args.length == 1) {
+            return Collections.singletonList("--dry-run");
+        }
+        return Collections.emptyList();
+    }
+}
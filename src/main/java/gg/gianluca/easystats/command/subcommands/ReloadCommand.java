@@ -21,6 +21,7 @@ public class ReloadCommand extends BaseCommand {
     @Override
     public boolean execute(CommandSender sender, Command command, String label, String[] args) {
         plugin.reloadConfig();
+        plugin.reloadLookups();
         sender.sendMessage(ChatColor.GREEN + "Configuration reloaded successfully!");
         return true;
     }
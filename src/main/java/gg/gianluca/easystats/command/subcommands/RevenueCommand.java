@@ -37,6 +37,9 @@ public class RevenueCommand extends BaseCommand {
                     return true;
                 }
                 String timeFilter = args.length > 3 && args[2].equals("-t") ? args[3] : null;
+                if (!isValidTimeFilter(sender, timeFilter)) {
+                    return true;
+                }
                 handleView(sender, platform, timeFilter);
                 break;
             case "compare":
@@ -67,8 +70,10 @@ public class RevenueCommand extends BaseCommand {
     }
 
     private void handleView(CommandSender sender, String platform, String timeFilter) {
-        Map<String, Double> stats = dataManager.getRevenueStats(platform, timeFilter);
-        
+        query(sender, () -> dataManager.getRevenueStats(platform, timeFilter), stats -> sendView(sender, platform, stats));
+    }
+
+    private void sendView(CommandSender sender, String platform, Map<String, Double> stats) {
         sender.sendMessage(ChatColor.GOLD + "Revenue Statistics for " + platform + ":");
         for (Map.Entry<String, Double> entry : stats.entrySet()) {
             String currency = entry.getKey();
@@ -78,8 +83,11 @@ public class RevenueCommand extends BaseCommand {
     }
 
     private void handleCompare(CommandSender sender, String platform1, String platform2) {
-        Map<String, Double> stats1 = dataManager.getRevenueStats(platform1, null);
-        Map<String, Double> stats2 = dataManager.getRevenueStats(platform2, null);
+        query(sender, () -> List.of(dataManager.getRevenueStats(platform1, null), dataManager.getRevenueStats(platform2, null)),
+                stats -> sendCompare(sender, platform1, platform2, stats.get(0), stats.get(1)));
+    }
+
+    private void sendCompare(CommandSender sender, String platform1, String platform2, Map<String, Double> stats1, Map<String, Double> stats2) {
 
         sender.sendMessage(ChatColor.GOLD + "Revenue Comparison:");
         for (String currency : stats1.keySet()) {
@@ -3,6 +3,8 @@ package gg.gianluca.easystats.command.subcommands;
 import gg.gianluca.easystats.EasyStats;
 import gg.gianluca.easystats.command.base.BaseCommand;
 import gg.gianluca.easystats.session.SessionManager;
+import gg.gianluca.easystats.session.SessionWindow;
+import gg.gianluca.easystats.util.Formats;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -28,22 +30,18 @@ public class SessionCommand extends BaseCommand {
         }
 
         String subcommand = args[0].toLowerCase();
-        String hostname = args[1];
+        String hostname = plugin.getPlatformResolver().resolveName(args[1]);
 
         switch (subcommand) {
             case "check":
-                if (args.length < 3) {
-                    sender.sendMessage(ChatColor.RED + "Usage: /easystats session check <hostname> <time>");
-                    return true;
-                }
-                handleCheck(sender, hostname, args[2]);
+                handleCheck(sender, hostname, args.length > 2 ? args[2] : "all");
                 break;
             case "compare":
                 if (args.length < 3) {
                     sender.sendMessage(ChatColor.RED + "Usage: /easystats session compare <hostname1> <hostname2>");
                     return true;
                 }
-                handleCompare(sender, hostname, args[2]);
+                handleCompare(sender, hostname, plugin.getPlatformResolver().resolveName(args[2]));
                 break;
             default:
                 sendHelp(sender);
@@ -53,18 +51,39 @@ public class SessionCommand extends BaseCommand {
     }
 
     private void handleCheck(CommandSender sender, String hostname, String time) {
-        double avgTime = sessionManager.getAverageSessionTime(hostname);
-        String formattedTime = formatDuration((long) avgTime);
-        sender.sendMessage(ChatColor.GREEN + "Average session time for " + hostname + ": " + formattedTime);
+        if (time.equalsIgnoreCase("all")) {
+            double avgTime = sessionManager.getAverageSessionTime(hostname);
+            String formattedTime = Formats.formatDuration((long) avgTime);
+            sender.sendMessage(ChatColor.GREEN + "Average session time for " + hostname + ": " + formattedTime);
+            sendPercentiles(sender, sessionManager.getSessionPercentiles(hostname));
+            return;
+        }
+
+        SessionWindow window = SessionWindow.fromString(time);
+        if (window == null) {
+            sender.sendMessage(ChatColor.RED + "Invalid time window! Use 1h, 24h, 7d or all.");
+            return;
+        }
+        Map<String, Long> stats = sessionManager.getSessionWindowStats(hostname, window);
+        sender.sendMessage(ChatColor.GREEN + "Average session time for " + hostname + " (last " + window.getName() + "): "
+                + Formats.formatDuration(stats.get("average")) + ChatColor.GRAY + " over " + stats.get("sessions") + " sessions");
+        sendPercentiles(sender, stats);
+    }
+
+    private void sendPercentiles(CommandSender sender, Map<String, Long> percentiles) {
+        sender.sendMessage(ChatColor.YELLOW + "p50: " + Formats.formatDuration(percentiles.get("p50"))
+                + ChatColor.GRAY + " | " + ChatColor.YELLOW + "p90: " + Formats.formatDuration(percentiles.get("p90"))
+                + ChatColor.GRAY + " | " + ChatColor.YELLOW + "p99: " + Formats.formatDuration(percentiles.get("p99"))
+                + ChatColor.GRAY + " | " + ChatColor.YELLOW + "max: " + Formats.formatDuration(percentiles.get("max")));
     }
 
     private void handleCompare(CommandSender sender, String hostname1, String hostname2) {
         Map<String, Double> comparison = sessionManager.compareSessionTimes(hostname1, hostname2);
         
-        String time1 = formatDuration(comparison.get(hostname1).longValue());
-        String time2 = formatDuration(comparison.get(hostname2).longValue());
-        String diff = formatDuration(comparison.get("difference").longValue());
-        double diffPercent = comparison.get("difference_percentage");
+        String time1 = Formats.formatDuration(comparison.get("hostname1_avg").longValue());
+        String time2 = Formats.formatDuration(comparison.get("hostname2_avg").longValue());
+        String diff = Formats.formatDuration(comparison.get("difference").longValue());
+        double diffPercent = comparison.get("percent_difference");
 
         sender.sendMessage(ChatColor.GOLD + "=== Session Time Comparison ===");
         sender.sendMessage(ChatColor.YELLOW + hostname1 + ": " + time1);
@@ -72,23 +91,9 @@ public class SessionCommand extends BaseCommand {
         sender.sendMessage(ChatColor.YELLOW + "Difference: " + diff + " (" + String.format("%.1f", diffPercent) + "%)");
     }
 
-    private String formatDuration(long milliseconds) {
-        long seconds = milliseconds / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        
-        if (hours > 0) {
-            return String.format("%dh %dm %ds", hours, minutes % 60, seconds % 60);
-        } else if (minutes > 0) {
-            return String.format("%dm %ds", minutes, seconds % 60);
-        } else {
-            return String.format("%ds", seconds);
-        }
-    }
-
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== Session Commands ===");
-        sender.sendMessage(ChatColor.YELLOW + "/easystats session check <hostname> <time> - Check average session time");
+        sender.sendMessage(ChatColor.YELLOW + "/easystats session check <hostname> [1h|24h|7d|all] - Check session times");
         sender.sendMessage(ChatColor.YELLOW + "/easystats session compare <hostname1> <hostname2> - Compare session times");
     }
 
@@ -97,6 +102,9 @@ public class SessionCommand extends BaseCommand {
         if (args.length == 1) {
             return Arrays.asList("check", "compare");
         }
+        if (args.length == 3 && args[0].equalsIgnoreCase("check")) {
+            return Arrays.asList("1h", "24h", "7d", "all");
+        }
         return null;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,145 @@
+package gg.gianluca.easystats.country;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+// Tiers from countries.yml, compiled into a table indexed by the two letters of an ISO 3166-1 alpha-2 code so
+// classifying a join is one array read. countries.yml may list codes or English country names; names are
+// translated through the JDK's country names plus the spellings GeoIP databases and older configs use.
+public class CountryTiers {
+    public static final String UNKNOWN_CODE = "XX";
+    public static final String UNKNOWN_TIER = "unknown";
+    public static final String OTHER_TIER = "other";
+
+    private static final Map<String, String> NAMES = new HashMap<>();
+    private static final String[] CODES = new String[26 * 26];
+
+    static {
+        for (int i = 0; i < CODES.length; i++) {
+            CODES[i] = new String(new char[]{(char) ('A' + i / 26), (char) ('A' + i % 26)});
+        }
+        for (String code : Locale.getISOCountries()) {
+            NAMES.put(new Locale("", code).getDisplayCountry(Locale.ENGLISH).toLowerCase(Locale.ROOT), code);
+        }
+        String[][] aliases = {
+                {"Hong Kong", "HK"}, {"Macao", "MO"}, {"Macau", "MO"}, {"Czech Republic", "CZ"}, {"The Netherlands", "NL"},
+                {"Türkiye", "TR"}, {"Russian Federation", "RU"}, {"Republic of Korea", "KR"}, {"Ivory Coast", "CI"},
+                {"Côte d'Ivoire", "CI"}, {"Macedonia", "MK"}, {"Swaziland", "SZ"}, {"Palestine", "PS"}, {"Myanmar", "MM"},
+                {"Congo", "CG"}, {"Republic of the Congo", "CG"}, {"DR Congo", "CD"}, {"Democratic Republic of the Congo", "CD"},
+                {"Republic of Lithuania", "LT"}, {"Republic of Moldova", "MD"}, {"Hashemite Kingdom of Jordan", "JO"},
+                {"Laos", "LA"}, {"Syria", "SY"}, {"Iran", "IR"}, {"Brunei", "BN"}, {"Cape Verde", "CV"}, {"East Timor", "TL"},
+                {"Vatican", "VA"}, {"Unknown", UNKNOWN_CODE}
+        };
+        for (String[] alias : aliases) {
+            NAMES.put(alias[0].toLowerCase(Locale.ROOT), alias[1]);
+        }
+    }
+
+    private final Logger logger;
+    private volatile Table table = new Table(new byte[26 * 26], new String[]{OTHER_TIER});
+
+    public CountryTiers(Logger logger) {
+        this.logger = logger;
+    }
+
+    public void load(ConfigurationSection countries) {
+        Map<String, Byte> tierIds = new LinkedHashMap<>();
+        tierIds.put(OTHER_TIER, (byte) 0);
+        byte[] index = new byte[26 * 26];
+        int listed = 0;
+
+        if (countries != null) {
+            for (String tier : countries.getKeys(false)) {
+                if (tierIds.size() > Byte.MAX_VALUE) {
+                    logger.warning("Too many country tiers, ignoring " + tier);
+                    continue;
+                }
+                byte id = tierIds.computeIfAbsent(tier, k -> (byte) tierIds.size());
+                for (String country : countries.getStringList(tier)) {
+                    String code = toIsoCode(country);
+                    int slot = code != null ? slot(code) : -1;
+                    if (slot < 0) {
+                        logger.warning("Unknown country in countries.yml: " + country.trim());
+                        continue;
+                    }
+                    if (index[slot] != 0 && index[slot] != id) {
+                        logger.warning("Country " + country.trim() + " is listed in more than one tier, using " + tier);
+                    }
+                    index[slot] = id;
+                    listed++;
+                }
+            }
+        }
+
+        table = new Table(index, tierIds.keySet().toArray(new String[0]));
+        logger.info("Loaded " + listed + " countries into " + (tierIds.size() - 1) + " tiers");
+    }
+
+    // Countries not listed in countries.yml fall into "other"
+    public String getTier(String isoCode) {
+        if (isoCode == null || isoCode.equals(UNKNOWN_CODE)) {
+            return UNKNOWN_TIER;
+        }
+        int slot = slot(isoCode);
+        if (slot < 0) {
+            return UNKNOWN_TIER;
+        }
+        Table current = table;
+        return current.tiers()[current.index()[slot]];
+    }
+
+    // Accepts a two letter code in any case or a country name; null when neither is recognised
+    public static String toIsoCode(String country) {
+        if (country == null) {
+            return null;
+        }
+        String trimmed = country.trim();
+        if (trimmed.length() == 2) {
+            String code = trimmed.toUpperCase(Locale.ROOT);
+            return slot(code) >= 0 ? code : null;
+        }
+        return NAMES.get(trimmed.toLowerCase(Locale.ROOT));
+    }
+
+    // English name for display, the code itself when the JDK doesn't know it
+    public static String getDisplayName(String isoCode) {
+        if (!isIsoCode(isoCode) || isoCode.equals(UNKNOWN_CODE)) {
+            return "Unknown";
+        }
+        String name = new Locale("", isoCode).getDisplayCountry(Locale.ENGLISH);
+        return name.isEmpty() ? isoCode : name;
+    }
+
+    // Dense index of a code, 0 to 675, or -1; lets callers keep countries in primitive arrays
+    public static int indexOf(String isoCode) {
+        return isoCode != null ? slot(isoCode) : -1;
+    }
+
+    public static String codeAt(int index) {
+        return CODES[index];
+    }
+
+    public static boolean isIsoCode(String value) {
+        return value != null && value.length() == 2 && slot(value) >= 0;
+    }
+
+    private static int slot(String code) {
+        if (code.length() != 2) {
+            return -1;
+        }
+        int first = code.charAt(0) - 'A';
+        int second = code.charAt(1) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return -1;
+        }
+        return first * 26 + second;
+    }
+
+    private record Table(byte[] index, String[] tiers) {
+    }
+}
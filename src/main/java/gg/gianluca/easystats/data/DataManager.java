@@ -1,129 +1,161 @@
 package gg.gianluca.easystats.data;
 
 import gg.gianluca.easystats.EasyStats;
-import org.bukkit.configuration.file.FileConfiguration;
-
+import gg.gianluca.easystats.database.DatabaseFactory;
+import gg.gianluca.easystats.database.migration.Migrations;
+import gg.gianluca.easystats.database.migration.SchemaMigrator;
+import gg.gianluca.easystats.model.JoinData;
+import gg.gianluca.easystats.model.RevenueData;
+import gg.gianluca.easystats.session.SessionJournal;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.logging.Logger;
 
 public class DataManager {
-    private final EasyStats plugin;
-    private final FileConfiguration config;
+    private static final String[] PLAYER_COUNT_PERIODS = {"24h", "7d", "14d", "30d"};
+    private static final String JOINS_TAG = "joins";
+    private static final String REVENUE_TAG = "revenue";
+    private static final String PLAYER_COUNTS_TAG = "player_counts";
+    // Carried by reads spanning every campaign
+    private static final String CAMPAIGNS_TAG = "campaigns";
+
+    // Sums raw rows only for the partial hours at either end of the range and rollup buckets for the rest
+    private static final String PLATFORM_STATS_QUERY = "SELECT client_type, SUM(joins) AS count FROM (" +
+            RollupPlan.unionAll(
+                    "SELECT client_type, COUNT(*) AS joins FROM platform_stats WHERE platform = ? AND join_time >= ? AND join_time < ? GROUP BY client_type",
+                    "SELECT client_type, SUM(joins) AS joins FROM platform_stats_hourly WHERE platform = ? AND bucket_start >= ? AND bucket_start < ? GROUP BY client_type",
+                    "SELECT client_type, SUM(joins) AS joins FROM platform_stats_daily WHERE platform = ? AND bucket_start >= ? AND bucket_start < ? GROUP BY client_type") +
+            ") segments GROUP BY client_type";
+
+    private static final String COUNTRY_STATS_QUERY = "SELECT country, tier, client_type, SUM(joins) AS count FROM (" +
+            RollupPlan.unionAll(
+                    "SELECT country, tier, client_type, COUNT(*) AS joins FROM country_stats WHERE platform = ? AND join_time >= ? AND join_time < ? GROUP BY country, tier, client_type",
+                    "SELECT country, tier, client_type, SUM(joins) AS joins FROM country_stats_hourly WHERE platform = ? AND bucket_start >= ? AND bucket_start < ? GROUP BY country, tier, client_type",
+                    "SELECT country, tier, client_type, SUM(joins) AS joins FROM country_stats_daily WHERE platform = ? AND bucket_start >= ? AND bucket_start < ? GROUP BY country, tier, client_type") +
+            ") segments GROUP BY country, tier, client_type";
+
+    private final Logger logger;
+    private final DatabaseFactory databaseFactory;
+    private final WriteBehindQueue writeQueue;
+    private final long writeQueueShutdownTimeout;
+    private final LiveAggregates liveAggregates;
+    private final QueryCache queryCache;
+    private final RetentionService retentionService;
+    private final SessionJournal sessionJournal;
 
     public DataManager(EasyStats plugin) {
-        this.plugin = plugin;
-        this.config = plugin.getConfig();
+        this(plugin.getLogger(), plugin.getConfig(), plugin.getDataFolder());
+    }
+
+    // Does not need a running server, which lets the benchmarks drive the storage layer directly
+    public DataManager(Logger logger, ConfigurationSection config, File dataFolder) {
+        this.logger = logger;
+        this.databaseFactory = new DatabaseFactory(config.getConfigurationSection("database"), dataFolder);
+        this.liveAggregates = new LiveAggregates(databaseFactory.getDialect());
+        this.queryCache = new QueryCache(config.getConfigurationSection("cache"));
         initializeDatabase();
+
+        this.writeQueue = new WriteBehindQueue(logger, databaseFactory,
+                config.getInt("write-queue.capacity", 10000),
+                config.getInt("write-queue.batch-size", 500),
+                config.getLong("write-queue.flush-interval-ms", 1000L));
+        this.writeQueueShutdownTimeout = config.getLong("write-queue.shutdown-timeout-ms", 10000L);
+        this.writeQueue.addBatchListener(new RollupWriter(databaseFactory.getDialect()));
+        this.writeQueue.addBatchListener(liveAggregates);
+        this.writeQueue.addBatchListener(queryCache);
+        this.retentionService = new RetentionService(logger, databaseFactory, queryCache, config);
+        this.sessionJournal = new SessionJournal(logger, databaseFactory, writeQueue, config.getInt("data-retention.chunk-size", 5000));
     }
 
     private void initializeDatabase() {
-        try (Connection connection = getConnection()) {
-            // Create tables if they don't exist
-            createTables(connection);
+        try (Connection connection = getWriteConnection()) {
+            // Create tables and upgrade existing installs to the current schema
+            new SchemaMigrator(logger, databaseFactory.getDialect(), Migrations.all()).migrate(connection);
+            liveAggregates.seed(connection);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to initialize database: " + e.getMessage());
+            logger.severe("Failed to initialize database: " + e.getMessage());
         }
     }
 
-    private void createTables(Connection connection) throws SQLException {
-        // Create platform_stats table
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute("CREATE TABLE IF NOT EXISTS platform_stats (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "platform VARCHAR(50) NOT NULL," +
-                    "client_type VARCHAR(20) NOT NULL," +
-                    "join_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-
-            // Create country_stats table
-            stmt.execute("CREATE TABLE IF NOT EXISTS country_stats (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "platform VARCHAR(50) NOT NULL," +
-                    "country VARCHAR(50) NOT NULL," +
-                    "tier VARCHAR(10) NOT NULL," +
-                    "client_type VARCHAR(20) NOT NULL," +
-                    "join_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-
-            // Create revenue table
-            stmt.execute("CREATE TABLE IF NOT EXISTS revenue (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "platform VARCHAR(50) NOT NULL," +
-                    "amount DECIMAL(10,2) NOT NULL," +
-                    "currency VARCHAR(3) NOT NULL," +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-
-            // Create campaigns table
-            stmt.execute("CREATE TABLE IF NOT EXISTS campaigns (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "name VARCHAR(50) NOT NULL UNIQUE," +
-                    "description TEXT," +
-                    "start_date DATE NOT NULL," +
-                    "end_date DATE," +
-                    "hostname VARCHAR(255)," +
-                    "budget DECIMAL(10,2) NOT NULL" +
-                    ")");
-
-            // Create joins table
-            stmt.execute("CREATE TABLE IF NOT EXISTS joins (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "uuid VARCHAR(36) NOT NULL," +
-                    "platform VARCHAR(50) NOT NULL," +
-                    "hostname VARCHAR(255) NOT NULL," +
-                    "join_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-
-            // Create player_counts table
-            stmt.execute("CREATE TABLE IF NOT EXISTS player_counts (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "platform VARCHAR(50) NOT NULL," +
-                    "count INT NOT NULL," +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")");
-        }
+    // Borrowed from the pool; closing it hands it back instead of tearing it down
+    private Connection getReadConnection() throws SQLException {
+        return databaseFactory.getReadConnection();
     }
 
-    private Connection getConnection() throws SQLException {
-        String url = config.getString("database.url");
-        String username = config.getString("database.username");
-        String password = config.getString("database.password");
-        return DriverManager.getConnection(url, username, password);
+    // Reads run under the QueryContext of the calling command, if there is one
+    private static PreparedStatement prepareRead(Connection connection, String sql) throws SQLException {
+        return QueryContext.apply(connection.prepareStatement(sql));
     }
 
-    public void recordJoin(UUID uuid, String platform, String hostname) {
-        try (Connection connection = getConnection()) {
-            String sql = "INSERT INTO joins (uuid, platform, hostname, join_time) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, uuid.toString());
-                statement.setString(2, platform);
-                statement.setString(3, hostname);
-                statement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-                statement.executeUpdate();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error recording join: " + e.getMessage());
-        }
+    private Connection getWriteConnection() throws SQLException {
+        return databaseFactory.getWriteConnection();
+    }
+
+    // Writes the raw join rows; the hourly and daily rollups are updated in the same batch by RollupWriter
+    public void recordJoin(JoinData join) {
+        long joinTime = join.getJoinTime().toEpochMilli();
+        String clientType = clientType(join);
+        // The live totals count the join once its batch commits, so a dropped or rolled back write never shows up
+        writeQueue.enqueue(new WriteEvent(join)
+                .tag(platformTag(join.getPlatform()))
+                .tag(JOINS_TAG)
+                .add("INSERT INTO joins (uuid, platform, hostname, client_type, join_time) VALUES (?, ?, ?, ?, ?)", statement -> {
+                    statement.setString(1, join.getPlayerId().toString());
+                    statement.setString(2, join.getPlatform());
+                    statement.setString(3, join.getHostname());
+                    statement.setString(4, clientType);
+                    statement.setLong(5, joinTime);
+                })
+                .add("INSERT INTO platform_stats (platform, client_type, join_time) VALUES (?, ?, ?)", statement -> {
+                    statement.setString(1, join.getPlatform());
+                    statement.setString(2, clientType);
+                    statement.setLong(3, joinTime);
+                })
+                .add("INSERT INTO country_stats (platform, country, tier, client_type, join_time) VALUES (?, ?, ?, ?, ?)", statement -> {
+                    statement.setString(1, join.getPlatform());
+                    statement.setString(2, join.getCountry());
+                    statement.setString(3, join.getCountryTier());
+                    statement.setString(4, clientType);
+                    statement.setLong(5, joinTime);
+                }));
+    }
+
+    private static String platformTag(String platform) {
+        return "platform:" + platform;
+    }
+
+    private static String campaignTag(String name) {
+        return "campaign:" + name;
+    }
+
+    private void invalidateCampaign(String name) {
+        queryCache.invalidate(campaignTag(name));
+        queryCache.invalidate(CAMPAIGNS_TAG);
+    }
+
+    static String clientType(JoinData join) {
+        return join.isBedrock() ? "bedrock" : "java";
     }
 
     public void addRevenue(String platform, double amount, String currency) {
-        try (Connection connection = getConnection()) {
-            String sql = "INSERT INTO revenue (platform, amount, currency, timestamp) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, platform);
-                statement.setDouble(2, amount);
-                statement.setString(3, currency);
-                statement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-                statement.executeUpdate();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error adding revenue: " + e.getMessage());
-        }
+        long timestamp = System.currentTimeMillis();
+        writeQueue.enqueue(new WriteEvent(new RevenueData(platform, amount, currency))
+                .tag(platformTag(platform))
+                .tag(REVENUE_TAG)
+                .add("INSERT INTO revenue (platform, amount, currency, timestamp) VALUES (?, ?, ?, ?)", statement -> {
+                    statement.setString(1, platform);
+                    statement.setDouble(2, amount);
+                    statement.setString(3, currency);
+                    statement.setLong(4, timestamp);
+                }));
     }
 
     public void createCampaign(String name, String description, String startDate, String endDate, String hostname, double budget) {
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getWriteConnection()) {
             String sql = "INSERT INTO campaigns (name, description, start_date, end_date, hostname, budget) VALUES (?, ?, ?, ?, ?, ?)";
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, name);
@@ -134,15 +166,20 @@ public class DataManager {
                 statement.setDouble(6, budget);
                 statement.executeUpdate();
             }
+            invalidateCampaign(name);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error creating campaign: " + e.getMessage());
+            logger.severe("Error creating campaign: " + e.getMessage());
         }
     }
 
     public Map<String, Object> getCampaign(String name) {
-        try (Connection connection = getConnection()) {
+        return queryCache.get("campaign", List.of(name), List.of(campaignTag(name)), () -> loadCampaign(name));
+    }
+
+    private Map<String, Object> loadCampaign(String name) {
+        try (Connection connection = getReadConnection()) {
             String sql = "SELECT * FROM campaigns WHERE name = ?";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            try (PreparedStatement statement = prepareRead(connection, sql)) {
                 statement.setString(1, name);
                 try (ResultSet resultSet = statement.executeQuery()) {
                     if (resultSet.next()) {
@@ -158,60 +195,77 @@ public class DataManager {
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting campaign: " + e.getMessage());
+            logger.severe("Error getting campaign: " + e.getMessage());
         }
         return null;
     }
 
     public void endCampaign(String name) {
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getWriteConnection()) {
             String sql = "UPDATE campaigns SET end_date = ? WHERE name = ?";
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, new SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date()));
                 statement.setString(2, name);
                 statement.executeUpdate();
             }
+            invalidateCampaign(name);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error ending campaign: " + e.getMessage());
+            logger.severe("Error ending campaign: " + e.getMessage());
         }
     }
 
     public boolean addHostnameToCampaign(String name, String hostname) {
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getWriteConnection()) {
             String sql = "UPDATE campaigns SET hostname = ? WHERE name = ?";
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, hostname);
                 statement.setString(2, name);
-                return statement.executeUpdate() > 0;
+                boolean updated = statement.executeUpdate() > 0;
+                invalidateCampaign(name);
+                return updated;
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error adding hostname to campaign: " + e.getMessage());
+            logger.severe("Error adding hostname to campaign: " + e.getMessage());
             return false;
         }
     }
 
     public boolean removeHostnameFromCampaign(String name, String hostname) {
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getWriteConnection()) {
             String sql = "UPDATE campaigns SET hostname = NULL WHERE name = ? AND hostname = ?";
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, name);
                 statement.setString(2, hostname);
-                return statement.executeUpdate() > 0;
+                boolean updated = statement.executeUpdate() > 0;
+                invalidateCampaign(name);
+                return updated;
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error removing hostname from campaign: " + e.getMessage());
+            logger.severe("Error removing hostname from campaign: " + e.getMessage());
             return false;
         }
     }
 
     public Map<String, Object> getCampaignMetrics(String name) {
+        return orEmpty(queryCache.get("campaign_metrics", List.of(name), List.of(campaignTag(name), JOINS_TAG, REVENUE_TAG),
+                () -> loadCampaignMetrics(name)));
+    }
+
+    private Map<String, Object> loadCampaignMetrics(String name) {
         Map<String, Object> metrics = new HashMap<>();
-        try (Connection connection = getConnection()) {
-            String sql = "SELECT COUNT(*) as joins, COUNT(DISTINCT uuid) as unique_players FROM joins j " +
+        try (Connection connection = getReadConnection()) {
+            TimeRange range = getCampaignRange(connection, name);
+            if (range == null) {
+                return metrics;
+            }
+
+            String sql = "SELECT COUNT(*) AS joins, COUNT(DISTINCT j.uuid) AS unique_players FROM joins j " +
                         "INNER JOIN campaigns c ON j.hostname = c.hostname " +
-                        "WHERE c.name = ? AND j.join_time BETWEEN c.start_date AND COALESCE(c.end_date, CURRENT_TIMESTAMP)";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        "WHERE c.name = ? AND j.join_time >= ? AND j.join_time < ?";
+            try (PreparedStatement statement = prepareRead(connection, sql)) {
                 statement.setString(1, name);
+                statement.setLong(2, range.getFrom());
+                statement.setLong(3, range.getTo());
                 try (ResultSet resultSet = statement.executeQuery()) {
                     if (resultSet.next()) {
                         metrics.put("total_joins", resultSet.getInt("joins"));
@@ -219,163 +273,224 @@ public class DataManager {
                     }
                 }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting campaign metrics: " + e.getMessage());
+
+            // Revenue is recorded per platform, so the campaign is credited with the revenue of the platforms
+            // its hostname's joins were counted under during the campaign
+            sql = "SELECT COALESCE(SUM(r.amount), 0) AS revenue FROM revenue r " +
+                        "WHERE r.timestamp >= ? AND r.timestamp < ? AND r.platform IN (" +
+                        "SELECT DISTINCT j.platform FROM joins j INNER JOIN campaigns c ON j.hostname = c.hostname " +
+                        "WHERE c.name = ? AND j.join_time >= ? AND j.join_time < ?)";
+            try (PreparedStatement statement = prepareRead(connection, sql)) {
+                statement.setLong(1, range.getFrom());
+                statement.setLong(2, range.getTo());
+                statement.setString(3, name);
+                statement.setLong(4, range.getFrom());
+                statement.setLong(5, range.getTo());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    metrics.put("revenue", resultSet.next() ? resultSet.getDouble("revenue") : 0.0);
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            logger.severe("Error getting campaign metrics: " + e.getMessage());
+            return null;
         }
         return metrics;
     }
 
+    private TimeRange getCampaignRange(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = prepareRead(connection, "SELECT start_date, end_date FROM campaigns WHERE name = ?")) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return TimeRange.ofDates(resultSet.getString("start_date"), resultSet.getString("end_date"));
+                }
+            }
+        }
+        return null;
+    }
+
     public Map<String, Long> getPlatformStats(String platform, String timeFilter) {
+        TimeRange range = parseTimeFilter(timeFilter, "platform stats");
+        if (range == null) {
+            return new HashMap<>();
+        }
+        if (range.isAll()) {
+            return liveAggregates.getPlatformStats(platform);
+        }
+        return orEmpty(queryCache.get("platform_stats", Arrays.asList(platform, timeFilter), List.of(platformTag(platform)),
+                () -> loadPlatformStats(platform, range)));
+    }
+
+    private Map<String, Long> loadPlatformStats(String platform, TimeRange range) {
         Map<String, Long> stats = new HashMap<>();
-        String query = timeFilter != null 
-            ? "SELECT client_type, COUNT(*) as count FROM platform_stats WHERE platform = ? AND join_time >= DATE_SUB(NOW(), INTERVAL ? DAY) GROUP BY client_type"
-            : "SELECT client_type, COUNT(*) as count FROM platform_stats WHERE platform = ? GROUP BY client_type";
+        RollupPlan plan = RollupPlan.of(range);
 
-        try (Connection connection = getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, platform);
-            if (timeFilter != null) {
-                stmt.setString(2, timeFilter.replace("d", ""));
-            }
-            ResultSet rs = stmt.executeQuery();
+        try (Connection connection = getReadConnection();
+             PreparedStatement stmt = prepareRead(connection, PLATFORM_STATS_QUERY)) {
+            plan.bind(stmt, 1, platform);
 
             long total = 0;
-            while (rs.next()) {
-                String clientType = rs.getString("client_type");
-                long count = rs.getLong("count");
-                stats.put(clientType.toLowerCase(), count);
-                total += count;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String clientType = rs.getString("client_type").toLowerCase();
+                    long count = rs.getLong("count");
+                    stats.merge(clientType, count, Long::sum);
+                    total += count;
+                }
             }
             stats.put("total", total);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get platform stats: " + e.getMessage());
+            logger.severe("Failed to get platform stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
     public Map<String, Double> getRevenueStats(String platform, String timeFilter) {
+        TimeRange range = parseTimeFilter(timeFilter, "revenue stats");
+        if (range == null) {
+            return new HashMap<>();
+        }
+        if (range.isAll()) {
+            return liveAggregates.getRevenueStats(platform);
+        }
+        return orEmpty(queryCache.get("revenue_stats", Arrays.asList(platform, timeFilter), List.of(platformTag(platform)),
+                () -> loadRevenueStats(platform, range)));
+    }
+
+    private Map<String, Double> loadRevenueStats(String platform, TimeRange range) {
         Map<String, Double> stats = new HashMap<>();
-        String query = timeFilter != null 
-            ? "SELECT currency, SUM(amount) as total FROM revenue WHERE platform = ? AND timestamp >= DATE_SUB(NOW(), INTERVAL ? DAY) GROUP BY currency"
-            : "SELECT currency, SUM(amount) as total FROM revenue WHERE platform = ? GROUP BY currency";
+        String query = "SELECT currency, SUM(amount) AS total FROM revenue " +
+                "WHERE platform = ? AND timestamp >= ? AND timestamp < ? GROUP BY currency";
 
-        try (Connection connection = getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = getReadConnection();
+             PreparedStatement stmt = prepareRead(connection, query)) {
             stmt.setString(1, platform);
-            if (timeFilter != null) {
-                stmt.setString(2, timeFilter.replace("d", ""));
-            }
-            ResultSet rs = stmt.executeQuery();
+            stmt.setLong(2, range.getFrom());
+            stmt.setLong(3, range.getTo());
 
-            while (rs.next()) {
-                String currency = rs.getString("currency");
-                double amount = rs.getDouble("total");
-                stats.put(currency, amount);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String currency = rs.getString("currency");
+                    double amount = rs.getDouble("total");
+                    stats.put(currency, amount);
+                }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get revenue stats: " + e.getMessage());
+            logger.severe("Failed to get revenue stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
     public Map<String, Map<String, Map<String, Long>>> getCountryStats(String platform, String timeFilter) {
-        Map<String, Map<String, Map<String, Long>>> stats = new HashMap<>();
-        String query = timeFilter != null 
-            ? "SELECT country, tier, client_type, COUNT(*) as count FROM country_stats WHERE platform = ? AND join_time >= DATE_SUB(NOW(), INTERVAL ? DAY) GROUP BY country, tier, client_type"
-            : "SELECT country, tier, client_type, COUNT(*) as count FROM country_stats WHERE platform = ? GROUP BY country, tier, client_type";
+        TimeRange range = parseTimeFilter(timeFilter, "country stats");
+        if (range == null) {
+            return new HashMap<>();
+        }
+        return orEmpty(queryCache.get("country_stats", Arrays.asList(platform, timeFilter), List.of(platformTag(platform)),
+                () -> loadCountryStats(platform, range)));
+    }
 
-        try (Connection connection = getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setString(1, platform);
-            if (timeFilter != null) {
-                stmt.setString(2, timeFilter.replace("d", ""));
-            }
-            ResultSet rs = stmt.executeQuery();
+    private Map<String, Map<String, Map<String, Long>>> loadCountryStats(String platform, TimeRange range) {
+        Map<String, Map<String, Map<String, Long>>> stats = new HashMap<>();
+        RollupPlan plan = RollupPlan.of(range);
 
-            while (rs.next()) {
-                String country = rs.getString("country");
-                String tier = rs.getString("tier");
-                String clientType = rs.getString("client_type").toLowerCase();
-                long count = rs.getLong("count");
+        try (Connection connection = getReadConnection();
+             PreparedStatement stmt = prepareRead(connection, COUNTRY_STATS_QUERY)) {
+            plan.bind(stmt, 1, platform);
 
-                if (!stats.containsKey(tier)) {
-                    stats.put(tier, new HashMap<>());
-                }
-                if (!stats.get(tier).containsKey(country)) {
-                    stats.get(tier).put(country, new HashMap<>());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String country = rs.getString("country");
+                    String tier = rs.getString("tier");
+                    String clientType = rs.getString("client_type").toLowerCase();
+                    long count = rs.getLong("count");
+
+                    stats.computeIfAbsent(tier, k -> new HashMap<>())
+                            .computeIfAbsent(country, k -> new HashMap<>())
+                            .merge(clientType, count, Long::sum);
                 }
-                stats.get(tier).get(country).put(clientType, count);
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get country stats: " + e.getMessage());
+            logger.severe("Failed to get country stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
     public Map<String, Object> getPlayerCountStats(String platform) {
+        return orEmpty(queryCache.get("player_count_stats", List.of(platform), List.of(platformTag(platform)),
+                () -> loadPlayerCountStats(platform)));
+    }
+
+    private Map<String, Object> loadPlayerCountStats(String platform) {
         Map<String, Object> stats = new HashMap<>();
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getReadConnection()) {
             // Get current count
-            try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT count FROM player_counts WHERE platform = ? AND timestamp = (SELECT MAX(timestamp) FROM player_counts WHERE platform = ?)"
+            try (PreparedStatement stmt = prepareRead(connection,
+                "SELECT count FROM player_counts WHERE platform = ? ORDER BY timestamp DESC LIMIT 1"
             )) {
                 stmt.setString(1, platform);
-                stmt.setString(2, platform);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    stats.put("current", rs.getInt("count"));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        stats.put("current", rs.getInt("count"));
+                    }
                 }
             }
 
             // Get averages for different time periods
             Map<String, Integer> averages = new HashMap<>();
-            String[] periods = {"24h", "7d", "14d", "30d"};
-            for (String period : periods) {
-                String timeExpr = switch (period) {
-                    case "24h" -> "DATETIME('now', '-1 day')";
-                    case "7d" -> "DATETIME('now', '-7 days')";
-                    case "14d" -> "DATETIME('now', '-14 days')";
-                    case "30d" -> "DATETIME('now', '-30 days')";
-                    default -> "DATETIME('now', '-1 day')";
-                };
-                
-                try (PreparedStatement stmt = connection.prepareStatement(
-                    "SELECT AVG(count) as avg_count FROM player_counts WHERE platform = ? AND timestamp >= " + timeExpr
-                )) {
+            try (PreparedStatement stmt = prepareRead(connection,
+                "SELECT AVG(count) AS avg_count FROM player_counts WHERE platform = ? AND timestamp >= ? AND timestamp < ?"
+            )) {
+                for (String period : PLAYER_COUNT_PERIODS) {
+                    TimeRange range = TimeRange.parse(period);
                     stmt.setString(1, platform);
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        averages.put(period, (int) Math.floor(rs.getDouble("avg_count")));
+                    stmt.setLong(2, range.getFrom());
+                    stmt.setLong(3, range.getTo());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            averages.put(period, (int) Math.floor(rs.getDouble("avg_count")));
+                        }
                     }
                 }
             }
             stats.put("averages", averages);
 
             // Get peak player count and time
-            try (PreparedStatement stmt = connection.prepareStatement(
+            try (PreparedStatement stmt = prepareRead(connection,
                 "SELECT count, timestamp FROM player_counts WHERE platform = ? ORDER BY count DESC LIMIT 1"
             )) {
                 stmt.setString(1, platform);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    stats.put("peak_count", rs.getInt("count"));
-                    stats.put("peak_time", rs.getTimestamp("timestamp").toString());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        stats.put("peak_count", rs.getInt("count"));
+                        stats.put("peak_time", new Timestamp(rs.getLong("timestamp")).toString());
+                    }
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get player count stats: " + e.getMessage());
+            logger.severe("Failed to get player count stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
     public Map<String, Object> getGlobalPlayerCountStats() {
+        return orEmpty(queryCache.get("player_count_stats", List.of(), List.of(PLAYER_COUNTS_TAG), this::loadGlobalPlayerCountStats));
+    }
+
+    private Map<String, Object> loadGlobalPlayerCountStats() {
         Map<String, Object> stats = new HashMap<>();
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getReadConnection()) {
             // Get current global count
-            try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT SUM(count) as total FROM (SELECT platform, count FROM player_counts pc1 WHERE timestamp = (SELECT MAX(timestamp) FROM player_counts pc2 WHERE pc2.platform = pc1.platform) GROUP BY platform)"
-            )) {
-                ResultSet rs = stmt.executeQuery();
+            try (PreparedStatement stmt = prepareRead(connection,
+                "SELECT SUM(pc.count) AS total FROM player_counts pc " +
+                "INNER JOIN (SELECT platform, MAX(timestamp) AS latest FROM player_counts GROUP BY platform) l " +
+                "ON pc.platform = l.platform AND pc.timestamp = l.latest"
+            );
+                 ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     stats.put("current", rs.getInt("total"));
                 }
@@ -383,78 +498,94 @@ public class DataManager {
 
             // Get averages for different time periods
             Map<String, Integer> averages = new HashMap<>();
-            String[] periods = {"24h", "7d", "14d", "30d"};
-            for (String period : periods) {
-                String timeExpr = switch (period) {
-                    case "24h" -> "DATETIME('now', '-1 day')";
-                    case "7d" -> "DATETIME('now', '-7 days')";
-                    case "14d" -> "DATETIME('now', '-14 days')";
-                    case "30d" -> "DATETIME('now', '-30 days')";
-                    default -> "DATETIME('now', '-1 day')";
-                };
-                
-                try (PreparedStatement stmt = connection.prepareStatement(
-                    "SELECT AVG(total) as avg_count FROM (SELECT timestamp, SUM(count) as total FROM player_counts WHERE timestamp >= " + timeExpr + " GROUP BY timestamp)"
-                )) {
-                    ResultSet rs = stmt.executeQuery();
-                    if (rs.next()) {
-                        averages.put(period, (int) Math.floor(rs.getDouble("avg_count")));
+            try (PreparedStatement stmt = prepareRead(connection,
+                "SELECT AVG(total) AS avg_count FROM (SELECT timestamp, SUM(count) AS total FROM player_counts " +
+                "WHERE timestamp >= ? AND timestamp < ? GROUP BY timestamp) samples"
+            )) {
+                for (String period : PLAYER_COUNT_PERIODS) {
+                    TimeRange range = TimeRange.parse(period);
+                    stmt.setLong(1, range.getFrom());
+                    stmt.setLong(2, range.getTo());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            averages.put(period, (int) Math.floor(rs.getDouble("avg_count")));
+                        }
                     }
                 }
             }
             stats.put("averages", averages);
 
             // Get peak player count and time
-            try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT SUM(count) as total, timestamp FROM player_counts GROUP BY timestamp ORDER BY total DESC LIMIT 1"
-            )) {
-                ResultSet rs = stmt.executeQuery();
+            try (PreparedStatement stmt = prepareRead(connection,
+                "SELECT SUM(count) AS total, timestamp FROM player_counts GROUP BY timestamp ORDER BY total DESC LIMIT 1"
+            );
+                 ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     stats.put("peak_count", rs.getInt("total"));
-                    stats.put("peak_time", rs.getTimestamp("timestamp").toString());
+                    stats.put("peak_time", new Timestamp(rs.getLong("timestamp")).toString());
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get global player count stats: " + e.getMessage());
+            logger.severe("Failed to get global player count stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
     public void recordPlayerCount(String platform, int count) {
-        try (Connection connection = getConnection()) {
-            String sql = "INSERT INTO player_counts (platform, count, timestamp) VALUES (?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, platform);
-                statement.setInt(2, count);
-                statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-                statement.executeUpdate();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error recording player count: " + e.getMessage());
+        recordPlayerCounts(Map.of(platform, count));
+    }
+
+    // One event for the whole sample, sharing a timestamp so the global stats can sum the platforms per sample
+    public void recordPlayerCounts(Map<String, Integer> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        WriteEvent event = new WriteEvent(counts).tag(PLAYER_COUNTS_TAG);
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            event.tag(platformTag(entry.getKey()))
+                    .add("INSERT INTO player_counts (platform, count, timestamp) VALUES (?, ?, ?)", statement -> {
+                        statement.setString(1, entry.getKey());
+                        statement.setInt(2, entry.getValue());
+                        statement.setLong(3, timestamp);
+                    });
         }
+        writeQueue.enqueue(event);
     }
 
     public List<String> getAllHostnames() {
+        List<String> hostnames = queryCache.get("hostnames", List.of(), List.of(CAMPAIGNS_TAG), this::loadAllHostnames);
+        return hostnames != null ? hostnames : new ArrayList<>();
+    }
+
+    private List<String> loadAllHostnames() {
         List<String> hostnames = new ArrayList<>();
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getReadConnection()) {
             String sql = "SELECT DISTINCT hostname FROM campaigns WHERE hostname IS NOT NULL";
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = QueryContext.apply(connection.createStatement());
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
                     hostnames.add(rs.getString("hostname"));
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting all hostnames: " + e.getMessage());
+            logger.severe("Error getting all hostnames: " + e.getMessage());
+            return null;
         }
-        return hostnames;
+        return Collections.unmodifiableList(hostnames);
     }
 
     public List<Map<String, Object>> getAllCampaigns() {
+        List<Map<String, Object>> campaigns = queryCache.get("campaigns", List.of(), List.of(CAMPAIGNS_TAG), this::loadAllCampaigns);
+        return campaigns != null ? campaigns : new ArrayList<>();
+    }
+
+    private List<Map<String, Object>> loadAllCampaigns() {
         List<Map<String, Object>> campaigns = new ArrayList<>();
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getReadConnection()) {
             String sql = "SELECT * FROM campaigns";
-            try (Statement stmt = connection.createStatement();
+            try (Statement stmt = QueryContext.apply(connection.createStatement());
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
                     Map<String, Object> campaign = new HashMap<>();
@@ -464,20 +595,27 @@ public class DataManager {
                     campaign.put("end_date", rs.getString("end_date"));
                     campaign.put("hostname", rs.getString("hostname"));
                     campaign.put("budget", rs.getDouble("budget"));
-                    campaigns.add(campaign);
+                    campaigns.add(Collections.unmodifiableMap(campaign));
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting all campaigns: " + e.getMessage());
+            logger.severe("Error getting all campaigns: " + e.getMessage());
+            return null;
         }
-        return campaigns;
+        return Collections.unmodifiableList(campaigns);
     }
 
     public List<String> getCampaignHostnames(String campaignName) {
+        List<String> hostnames = queryCache.get("campaign_hostnames", List.of(campaignName), List.of(campaignTag(campaignName)),
+                () -> loadCampaignHostnames(campaignName));
+        return hostnames != null ? hostnames : new ArrayList<>();
+    }
+
+    private List<String> loadCampaignHostnames(String campaignName) {
         List<String> hostnames = new ArrayList<>();
-        try (Connection connection = getConnection()) {
+        try (Connection connection = getReadConnection()) {
             String sql = "SELECT hostname FROM campaigns WHERE name = ? AND hostname IS NOT NULL";
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement stmt = prepareRead(connection, sql)) {
                 stmt.setString(1, campaignName);
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
@@ -486,42 +624,56 @@ public class DataManager {
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting campaign hostnames: " + e.getMessage());
+            logger.severe("Error getting campaign hostnames: " + e.getMessage());
+            return null;
         }
-        return hostnames;
+        return Collections.unmodifiableList(hostnames);
     }
 
     public List<String> getPlatforms() {
+        List<String> platforms = queryCache.get("platforms", List.of(), List.of(JOINS_TAG), this::loadPlatforms);
+        return platforms != null ? platforms : new ArrayList<>();
+    }
+
+    private List<String> loadPlatforms() {
         List<String> platforms = new ArrayList<>();
-        try (Connection connection = getConnection()) {
-            String sql = "SELECT DISTINCT platform FROM platform_stats";
-            try (Statement stmt = connection.createStatement();
+        try (Connection connection = getReadConnection()) {
+            String sql = "SELECT DISTINCT platform FROM platform_stats_daily";
+            try (Statement stmt = QueryContext.apply(connection.createStatement());
                  ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
                     platforms.add(rs.getString("platform"));
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting platforms: " + e.getMessage());
+            logger.severe("Error getting platforms: " + e.getMessage());
+            return null;
         }
         return platforms;
     }
 
     public Map<String, Long> getCampaignJoinStats(String name, String timeFilter) {
+        TimeRange range = parseTimeFilter(timeFilter, "campaign join stats");
+        if (range == null) {
+            return new HashMap<>();
+        }
+        return orEmpty(queryCache.get("campaign_join_stats", Arrays.asList(name, timeFilter), List.of(campaignTag(name), JOINS_TAG),
+                () -> loadCampaignJoinStats(name, range)));
+    }
+
+    private Map<String, Long> loadCampaignJoinStats(String name, TimeRange range) {
         Map<String, Long> stats = new HashMap<>();
-        try (Connection connection = getConnection()) {
-            String sql = "SELECT client_type, COUNT(*) as count FROM joins j " +
+        try (Connection connection = getReadConnection()) {
+            String sql = "SELECT client_type, COUNT(*) AS count FROM joins j " +
                         "INNER JOIN campaigns c ON j.hostname = c.hostname " +
-                        "WHERE c.name = ? " +
-                        (timeFilter != null ? "AND j.join_time >= DATE_SUB(NOW(), INTERVAL ? DAY) " : "") +
+                        "WHERE c.name = ? AND j.join_time >= ? AND j.join_time < ? " +
                         "GROUP BY client_type";
-            
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+            try (PreparedStatement stmt = prepareRead(connection, sql)) {
                 stmt.setString(1, name);
-                if (timeFilter != null) {
-                    stmt.setString(2, timeFilter.replace("d", ""));
-                }
-                
+                stmt.setLong(2, range.getFrom());
+                stmt.setLong(3, range.getTo());
+
                 try (ResultSet rs = stmt.executeQuery()) {
                     long total = 0;
                     while (rs.next()) {
@@ -534,12 +686,51 @@ public class DataManager {
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error getting campaign join stats: " + e.getMessage());
+            logger.severe("Error getting campaign join stats: " + e.getMessage());
+            return null;
         }
         return stats;
     }
 
+    // API callers pass filters straight through; a bad one is logged and answered with empty stats, not thrown
+    private TimeRange parseTimeFilter(String timeFilter, String stats) {
+        try {
+            return TimeRange.parse(timeFilter);
+        } catch (IllegalArgumentException e) {
+            logger.severe("Error getting " + stats + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> stats) {
+        return stats != null ? stats : new HashMap<>();
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    public RetentionService getRetentionService() {
+        return retentionService;
+    }
+
+    public SessionJournal getSessionJournal() {
+        return sessionJournal;
+    }
+
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
     public void close() {
-        // Clean up any resources if needed
+        retentionService.stop();
+        // Drain queued writes before the pool goes away
+        // Held back journal records belong after everything queued, and the writer may still hold the connection
+        if (writeQueue.shutdown(writeQueueShutdownTimeout)) {
+            sessionJournal.writeBacklog();
+        } else if (sessionJournal.getBacklogSize() > 0) {
+            logger.warning(sessionJournal.getBacklogSize() + " session journal records were not written");
+        }
+        databaseFactory.close();
     }
 } 
\ No newline at end of file
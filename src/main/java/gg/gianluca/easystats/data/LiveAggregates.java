@@ -0,0 +1,153 @@
+package gg.gianluca.easystats.data;
+
+import gg.gianluca.easystats.database.Dialect;
+import gg.gianluca.easystats.model.JoinData;
+import gg.gianluca.easystats.model.RevenueData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// All-time join and revenue totals kept in memory. Each batch adds its joins and revenue to join_totals and
+// revenue_totals inside its own transaction, and to the in-memory counters once it has committed, so the stored
+// totals always match the raw rows and the counters never include a dropped or rolled back event.
+public class LiveAggregates implements WriteBehindQueue.BatchListener {
+    private static final String[] JOIN_KEY = {"platform", "client_type", "country", "tier"};
+    private static final String[] REVENUE_KEY = {"platform", "currency"};
+
+    private final String joinUpsertSql;
+    private final String revenueUpsertSql;
+
+    private final Map<String, Map<String, LongAdder>> platformJoins = new ConcurrentHashMap<>();
+    private final Map<JoinKey, LongAdder> joins = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, LongAdder>> revenue = new ConcurrentHashMap<>();
+
+    // Writer thread only: what the open transaction adds, applied once it commits
+    private final Map<JoinKey, Long> stagedJoins = new HashMap<>();
+    private final Map<RevenueKey, Long> stagedRevenue = new HashMap<>();
+
+    public LiveAggregates(Dialect dialect) {
+        this.joinUpsertSql = dialect.upsertIncrement("join_totals", JOIN_KEY, "joins");
+        this.revenueUpsertSql = dialect.upsertIncrement("revenue_totals", REVENUE_KEY, "amount_cents");
+    }
+
+    // Counters start from the stored totals, which are written with the rows they count
+    public void seed(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT platform, client_type, country, tier, joins FROM join_totals")) {
+                while (rs.next()) {
+                    JoinKey key = new JoinKey(rs.getString("platform"), rs.getString("client_type").toLowerCase(),
+                            rs.getString("country"), rs.getString("tier"));
+                    addJoins(key, rs.getLong("joins"));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT platform, currency, amount_cents FROM revenue_totals")) {
+                while (rs.next()) {
+                    revenueCounter(rs.getString("platform"), rs.getString("currency")).add(rs.getLong("amount_cents"));
+                }
+            }
+        }
+    }
+
+    private void addJoins(JoinKey key, long count) {
+        joins.computeIfAbsent(key, k -> new LongAdder()).add(count);
+        platformCounter(key.platform(), key.clientType()).add(count);
+    }
+
+    public Map<String, Long> getPlatformStats(String platform) {
+        Map<String, Long> stats = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : platformJoins.getOrDefault(platform, Map.of()).entrySet()) {
+            long count = entry.getValue().sum();
+            stats.put(entry.getKey(), count);
+            total += count;
+        }
+        stats.put("total", total);
+        return stats;
+    }
+
+    public Map<String, Double> getRevenueStats(String platform) {
+        Map<String, Double> stats = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : revenue.getOrDefault(platform, Map.of()).entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().sum() / 100.0);
+        }
+        return stats;
+    }
+
+    @Override
+    public void beforeCommit(Connection connection, List<WriteEvent> batch) throws SQLException {
+        // Whatever a rolled back batch staged is dropped here
+        stagedJoins.clear();
+        stagedRevenue.clear();
+        for (WriteEvent event : batch) {
+            if (event.getPayload() instanceof JoinData join) {
+                JoinKey key = new JoinKey(join.getPlatform(), DataManager.clientType(join), join.getCountry(), join.getCountryTier());
+                stagedJoins.merge(key, 1L, Long::sum);
+            } else if (event.getPayload() instanceof RevenueData revenue) {
+                stagedRevenue.merge(new RevenueKey(revenue.platform(), revenue.currency()), Math.round(revenue.amount() * 100), Long::sum);
+            }
+        }
+
+        if (!stagedJoins.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(joinUpsertSql)) {
+                for (Map.Entry<JoinKey, Long> entry : stagedJoins.entrySet()) {
+                    JoinKey key = entry.getKey();
+                    statement.setString(1, key.platform());
+                    statement.setString(2, key.clientType());
+                    statement.setString(3, key.country());
+                    statement.setString(4, key.tier());
+                    statement.setLong(5, entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        if (!stagedRevenue.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement(revenueUpsertSql)) {
+                for (Map.Entry<RevenueKey, Long> entry : stagedRevenue.entrySet()) {
+                    statement.setString(1, entry.getKey().platform());
+                    statement.setString(2, entry.getKey().currency());
+                    statement.setLong(3, entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    @Override
+    public void afterCommit(List<WriteEvent> batch) {
+        for (Map.Entry<JoinKey, Long> entry : stagedJoins.entrySet()) {
+            addJoins(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<RevenueKey, Long> entry : stagedRevenue.entrySet()) {
+            revenueCounter(entry.getKey().platform(), entry.getKey().currency()).add(entry.getValue());
+        }
+        stagedJoins.clear();
+        stagedRevenue.clear();
+    }
+
+    private LongAdder platformCounter(String platform, String clientType) {
+        return platformJoins.computeIfAbsent(platform, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(clientType, k -> new LongAdder());
+    }
+
+    private LongAdder revenueCounter(String platform, String currency) {
+        return revenue.computeIfAbsent(platform, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(currency, k -> new LongAdder());
+    }
+
+    private record JoinKey(String platform, String clientType, String country, String tier) {
+    }
+
+    private record RevenueKey(String platform, String currency) {
+    }
+}
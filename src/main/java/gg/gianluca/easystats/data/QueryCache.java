@@ -0,0 +1,286 @@
+package gg.gianluca.easystats.data;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Read-through cache for DataManager queries. Entries expire after a per-type TTL, the least recently used
+// entry is evicted once the cache is full, and writes drop every entry carrying one of their tags.
+// Concurrent misses for the same query share one database execution, so the database never runs two copies of a
+// query at once. Cached results are shared between callers, so they are handed out as read-only copies.
+public class QueryCache implements WriteBehindQueue.BatchListener {
+    private final int maxEntries;
+    private final Map<String, Long> ttls = new HashMap<>();
+    private final long defaultTtl;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> tagIndex = new HashMap<>();
+    // Bumped when a tag is invalidated while entries or loads carry it, so a load that raced with a write to one of
+    // its own tags is not cached; writes to other platforms or campaigns leave it alone
+    private final Map<String, Long> tagVersions = new HashMap<>();
+    // Tag -> loads in flight carrying it
+    private final Map<String, Integer> loadingTags = new HashMap<>();
+    // Bumped by clear(), which drops everything at once
+    private long generation;
+
+    // One load per query at a time; shared only while the running load is still current
+    private final SingleFlight<Key, Load> flights = new SingleFlight<>();
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public QueryCache(ConfigurationSection config) {
+        this.maxEntries = config != null ? Math.max(0, config.getInt("max-entries", 1000)) : 1000;
+        this.defaultTtl = TimeUnit.SECONDS.toMillis(config != null ? config.getLong("ttl-seconds.default", 10L) : 10L);
+        ConfigurationSection ttlSection = config != null ? config.getConfigurationSection("ttl-seconds") : null;
+        if (ttlSection != null) {
+            for (String type : ttlSection.getKeys(false)) {
+                ttls.put(type, TimeUnit.SECONDS.toMillis(ttlSection.getLong(type)));
+            }
+        }
+    }
+
+    // A null result is never cached, so failed or empty lookups are retried on the next call.
+    // The cache policy of the calling thread's QueryContext, if any, can skip the lookup or forbid the load.
+    public <T> T get(String type, List<?> arguments, Collection<String> tags, Supplier<T> loader) {
+        long ttl = ttls.getOrDefault(type, defaultTtl);
+        Stats typeStats = stats.computeIfAbsent(type, k -> new Stats());
+        QueryContext context = QueryContext.current();
+        QueryContext.CachePolicy policy = context != null ? context.getCachePolicy() : QueryContext.CachePolicy.USE;
+        Key key = new Key(type, arguments);
+        boolean cacheable = ttl > 0 && maxEntries > 0;
+        long now = System.currentTimeMillis();
+        Load load;
+        synchronized (this) {
+            Entry entry = cacheable && policy != QueryContext.CachePolicy.REFRESH ? entries.get(key) : null;
+            if (entry != null && entry.expiresAt > now) {
+                typeStats.hits.increment();
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value;
+                return value;
+            }
+            load = policy != QueryContext.CachePolicy.ONLY ? startLoad(tags) : null;
+        }
+
+        typeStats.misses.increment();
+        if (load == null) {
+            context.recordCacheMiss();
+            return null;
+        }
+        try {
+            T value = flights.run(key, load, context, this::isCurrent, () -> readOnly(loader.get()));
+            if (value != null && cacheable) {
+                put(key, new Entry(value, now + ttl, tags), load);
+            }
+            return value;
+        } finally {
+            finishLoad(load);
+        }
+    }
+
+    // Nested maps and lists too, like the tier -> country -> client maps of the country stats. Values may be
+    // null, which rules out Map.copyOf and List.copyOf.
+    @SuppressWarnings("unchecked")
+    private static <T> T readOnly(T value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new HashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), readOnly(entry.getValue()));
+            }
+            return (T) Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(readOnly(element));
+            }
+            return (T) Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    // Caller holds the lock
+    private Load startLoad(Collection<String> tags) {
+        long[] versions = new long[tags.size()];
+        int i = 0;
+        for (String tag : tags) {
+            versions[i++] = tagVersions.getOrDefault(tag, 0L);
+            loadingTags.merge(tag, 1, Integer::sum);
+        }
+        return new Load(generation, tags, versions);
+    }
+
+    private synchronized void finishLoad(Load load) {
+        for (String tag : load.tags()) {
+            loadingTags.computeIfPresent(tag, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // False once a tag of the load was invalidated or the cache cleared since it started. Decides both whether a
+    // result may be cached and whether a caller may take the result of a load that is already running: a refresh
+    // can, since no write it could have missed was committed since that load started.
+    private synchronized boolean isCurrent(Load load) {
+        if (load.generation() != generation) {
+            return false;
+        }
+        int i = 0;
+        for (String tag : load.tags()) {
+            if (tagVersions.getOrDefault(tag, 0L) != load.versions()[i++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void invalidate(String tag) {
+        synchronized (this) {
+            Set<Key> keys = tagIndex.remove(tag);
+            // Nothing cached or loading under this tag, so there is nothing it could make stale
+            if (keys == null && !loadingTags.containsKey(tag)) {
+                return;
+            }
+            tagVersions.merge(tag, 1L, Long::sum);
+            if (keys == null) {
+                return;
+            }
+            for (Key key : keys) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    untag(key, entry, tag);
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        tagIndex.clear();
+    }
+
+    // Invalidate only once the batch is committed, otherwise a read in between could cache the old value again
+    @Override
+    public void beforeCommit(Connection connection, List<WriteEvent> batch) {
+    }
+
+    @Override
+    public void afterCommit(List<WriteEvent> batch) {
+        Set<String> tags = new HashSet<>();
+        for (WriteEvent event : batch) {
+            tags.addAll(event.getTags());
+        }
+        for (String tag : tags) {
+            invalidate(tag);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    // Database executions started by cache misses
+    public long getLoadExecutions() {
+        return flights.getExecutions();
+    }
+
+    // Misses answered by another caller's execution of the same query instead of their own
+    public long getSharedLoads() {
+        return flights.getShared();
+    }
+
+    public int getLoadsInFlight() {
+        return flights.getInFlight();
+    }
+
+    // Query type -> {hits, misses}
+    public Map<String, long[]> getHitMissCounts() {
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        List<String> types = new ArrayList<>(stats.keySet());
+        types.sort(null);
+        for (String type : types) {
+            Stats typeStats = stats.get(type);
+            counts.put(type, new long[]{typeStats.hits.sum(), typeStats.misses.sum()});
+        }
+        return counts;
+    }
+
+    private synchronized void put(Key key, Entry entry, Load load) {
+        if (!isCurrent(load)) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            untagAll(key, previous);
+        }
+        for (String tag : entry.tags) {
+            tagIndex.computeIfAbsent(tag, k -> new HashSet<>()).add(key);
+        }
+
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            iterator.remove();
+            untagAll(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    private void untagAll(Key key, Entry entry) {
+        untag(key, entry, null);
+    }
+
+    // Removes the key from the index of every tag of the entry except skip
+    private void untag(Key key, Entry entry, String skip) {
+        for (String tag : entry.tags) {
+            if (tag.equals(skip)) {
+                continue;
+            }
+            Set<Key> keys = tagIndex.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                tagIndex.remove(tag);
+            }
+        }
+    }
+
+    private record Key(String type, List<?> arguments) {
+    }
+
+    private record Load(long generation, Collection<String> tags, long[] versions) {
+    }
+
+    private record Entry(Object value, long expiresAt, Collection<String> tags) {
+    }
+
+    private static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+}
@@ -0,0 +1,137 @@
+package gg.gianluca.easystats.data;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Deadline, cancellation and cache policy for the queries of one command or API call. While a context runs a
+// query, DataManager hands it every read statement it prepares on that thread, so the statements get a
+// setQueryTimeout matching what is left of the deadline and can be cancelled mid-query when the sender leaves or
+// the deadline passes. QueryCache reads the cache policy of the current context.
+public final class QueryContext {
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+
+    public enum CachePolicy {
+        // Serve from the cache when possible, load and cache otherwise
+        USE,
+        // Always load, and cache the fresh result for everyone else
+        REFRESH,
+        // Never load; a miss is recorded instead so the caller can load elsewhere
+        ONLY
+    }
+
+    private final long deadline;
+    private final CachePolicy cachePolicy;
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+    private volatile boolean cacheMissed;
+
+    public QueryContext(long timeoutMillis) {
+        this(timeoutMillis, CachePolicy.USE);
+    }
+
+    public QueryContext(long timeoutMillis, CachePolicy cachePolicy) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.cachePolicy = cachePolicy;
+    }
+
+    static QueryContext current() {
+        return CURRENT.get();
+    }
+
+    // Returns null without running the query if the context was cancelled or expired in the meantime
+    public <T> T run(Supplier<T> query) {
+        if (cancelled || timedOut) {
+            return null;
+        }
+        CURRENT.set(this);
+        try {
+            return query.get();
+        } finally {
+            CURRENT.remove();
+            statements.clear();
+        }
+    }
+
+    static <S extends Statement> S apply(S statement) throws SQLException {
+        QueryContext context = CURRENT.get();
+        if (context != null) {
+            context.register(statement);
+        }
+        return statement;
+    }
+
+    private void register(Statement statement) throws SQLException {
+        if (cachePolicy == CachePolicy.ONLY) {
+            // Uncached reads have no business running here; the caller is expected to retry with a loading policy
+            cacheMissed = true;
+            statement.close();
+            throw new SQLException("Query is not cached");
+        }
+        if (cancelled) {
+            statement.close();
+            throw new SQLException("Query was cancelled");
+        }
+        long remaining = deadline - System.nanoTime();
+        if (timedOut || remaining <= 0) {
+            timedOut = true;
+            statement.close();
+            throw new SQLTimeoutException("Query deadline passed");
+        }
+        statement.setQueryTimeout((int) Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1)));
+        statements.add(statement);
+    }
+
+    public long getRemainingMillis() {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    // The sender is gone, nobody is waiting for the result anymore
+    public void cancel() {
+        cancelled = true;
+        cancelStatements();
+    }
+
+    public void expire() {
+        timedOut = true;
+        cancelStatements();
+    }
+
+    private void cancelStatements() {
+        for (Statement statement : statements) {
+            try {
+                // A closed statement's connection may already serve another query
+                if (!statement.isClosed()) {
+                    statement.cancel();
+                }
+            } catch (SQLException ignored) {
+                // finished on its own
+            }
+        }
+    }
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    void recordCacheMiss() {
+        cacheMissed = true;
+    }
+
+    public boolean isCacheMissed() {
+        return cacheMissed;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,185 @@
+package gg.gianluca.easystats.data;
+
+import gg.gianluca.easystats.database.DatabaseFactory;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// Deletes expired rows in small keyset-paginated chunks, one short transaction per chunk with a pause in between,
+// so pruning never holds the SQLite write lock for long or sends one huge delete through MySQL replication.
+// Keys are assumed to grow with time (auto-increment ids, bucket starts), so a scan stops at the first chunk
+// that holds no expired rows.
+public class RetentionService {
+    private final Logger logger;
+    private final DatabaseFactory databaseFactory;
+    private final QueryCache queryCache;
+    private final List<Policy> policies = new ArrayList<>();
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    public RetentionService(Logger logger, DatabaseFactory databaseFactory, QueryCache queryCache, ConfigurationSection config) {
+        this.logger = logger;
+        this.databaseFactory = databaseFactory;
+        this.queryCache = queryCache;
+        this.chunkSize = Math.max(1, config.getInt("data-retention.chunk-size", 5000));
+        this.chunkPauseMillis = Math.max(0L, config.getLong("data-retention.chunk-pause-ms", 250L));
+
+        int defaultDays = config.getInt("retention_days", 180);
+        int statsDays = config.getInt("data-retention.platform-stats", defaultDays);
+        int revenueDays = config.getInt("data-retention.revenue", defaultDays);
+        int sessionDays = config.getInt("data-retention.sessions", defaultDays);
+
+        // Raw join rows follow platform-stats; the rollups keep the long-term history for retention_days
+        addPolicy("platform_stats", "id", "join_time", statsDays);
+        addPolicy("country_stats", "id", "join_time", statsDays);
+        addPolicy("joins", "id", "join_time", statsDays);
+        addPolicy("platform_stats_hourly", "bucket_start", "bucket_start", defaultDays);
+        addPolicy("country_stats_hourly", "bucket_start", "bucket_start", defaultDays);
+        addPolicy("platform_stats_daily", "bucket_start", "bucket_start", defaultDays);
+        addPolicy("country_stats_daily", "bucket_start", "bucket_start", defaultDays);
+        addPolicy("revenue", "id", "timestamp", revenueDays);
+        addPolicy("player_counts", "id", "timestamp", defaultDays);
+        addPolicy("sessions", "id", "end_time", sessionDays);
+    }
+
+    private void addPolicy(String table, String keyColumn, String timeColumn, int days) {
+        // Zero or a negative number of days keeps the table forever
+        if (days > 0) {
+            policies.add(new Policy(table, keyColumn, timeColumn, TimeUnit.DAYS.toMillis(days)));
+        }
+    }
+
+    // Returns null when another run is still in progress
+    public Result run(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, Long> rows = new LinkedHashMap<>();
+            for (Policy policy : policies) {
+                if (stopped) {
+                    break;
+                }
+                try {
+                    rows.put(policy.table(), prune(policy, start - policy.retentionMillis(), dryRun));
+                } catch (SQLException e) {
+                    logger.severe("Failed to prune " + policy.table() + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            Result result = new Result(rows, System.currentTimeMillis() - start, dryRun);
+            if (!dryRun && result.getTotal() > 0) {
+                queryCache.clear();
+            }
+            if (!dryRun) {
+                logger.info("Retention removed " + result.getTotal() + " expired rows in " + result.getDurationMillis() + " ms " + rows);
+            }
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long prune(Policy policy, long cutoff, boolean dryRun) throws SQLException, InterruptedException {
+        String chunkSql = "SELECT COUNT(*) AS size, MAX(" + policy.keyColumn() + ") AS last_key, MIN(" + policy.timeColumn() + ") AS first_time " +
+                "FROM (SELECT " + policy.keyColumn() + ", " + policy.timeColumn() + " FROM " + policy.table() +
+                " WHERE " + policy.keyColumn() + " > ? ORDER BY " + policy.keyColumn() + " LIMIT ?) chunk";
+        String rangeFilter = " FROM " + policy.table() + " WHERE " + policy.keyColumn() + " > ? AND " +
+                policy.keyColumn() + " <= ? AND " + policy.timeColumn() + " < ?";
+        String pruneSql = dryRun ? "SELECT COUNT(*) AS size" + rangeFilter : "DELETE" + rangeFilter;
+
+        long total = 0;
+        long lastKey = Long.MIN_VALUE;
+        while (!stopped) {
+            long chunkEnd;
+            try (Connection connection = dryRun ? databaseFactory.getReadConnection() : databaseFactory.getWriteConnection()) {
+                try (PreparedStatement statement = connection.prepareStatement(chunkSql)) {
+                    statement.setLong(1, lastKey);
+                    statement.setInt(2, chunkSize);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        if (!rs.next() || rs.getLong("size") == 0 || rs.getLong("first_time") >= cutoff) {
+                            break;
+                        }
+                        chunkEnd = rs.getLong("last_key");
+                    }
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(pruneSql)) {
+                    statement.setLong(1, lastKey);
+                    statement.setLong(2, chunkEnd);
+                    statement.setLong(3, cutoff);
+                    if (dryRun) {
+                        try (ResultSet rs = statement.executeQuery()) {
+                            total += rs.next() ? rs.getLong("size") : 0;
+                        }
+                    } else {
+                        total += statement.executeUpdate();
+                    }
+                }
+            }
+            lastKey = chunkEnd;
+
+            if (!dryRun && chunkPauseMillis > 0) {
+                Thread.sleep(chunkPauseMillis);
+            }
+        }
+        return total;
+    }
+
+    // Makes a running prune stop after its current chunk
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private record Policy(String table, String keyColumn, String timeColumn, long retentionMillis) {
+    }
+
+    public static class Result {
+        private final Map<String, Long> rows;
+        private final long durationMillis;
+        private final boolean dryRun;
+
+        private Result(Map<String, Long> rows, long durationMillis, boolean dryRun) {
+            this.rows = rows;
+            this.durationMillis = durationMillis;
+            this.dryRun = dryRun;
+        }
+
+        // Table -> rows deleted, or rows that would be deleted on a dry run
+        public Map<String, Long> getRows() {
+            return rows;
+        }
+
+        public long getTotal() {
+            return rows.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+    }
+}
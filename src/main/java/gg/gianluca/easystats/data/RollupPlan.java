@@ -0,0 +1,78 @@
+package gg.gianluca.easystats.data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Splits a time range into raw, hourly and daily segments so that rollup reads stay exact:
+// [raw head][hourly head][daily][hourly tail][raw tail]. Unused segments are empty ranges,
+// which keeps the SQL identical for every range.
+public final class RollupPlan {
+    public static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    public static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final long[] bounds = new long[10];
+
+    private RollupPlan() {
+    }
+
+    public static RollupPlan of(TimeRange range) {
+        RollupPlan plan = new RollupPlan();
+        long from = range.getFrom();
+        long to = range.getTo();
+
+        if (range.isAll()) {
+            plan.set(2, from, to);
+            return plan;
+        }
+
+        long hourStart = ceil(from, HOUR);
+        long hourEnd = floor(to, HOUR);
+        if (hourStart >= hourEnd) {
+            plan.set(0, from, to);
+            return plan;
+        }
+        plan.set(0, from, hourStart);
+        plan.set(4, hourEnd, to);
+
+        long dayStart = ceil(hourStart, DAY);
+        long dayEnd = floor(hourEnd, DAY);
+        if (dayStart >= dayEnd) {
+            plan.set(1, hourStart, hourEnd);
+            return plan;
+        }
+        plan.set(1, hourStart, dayStart);
+        plan.set(2, dayStart, dayEnd);
+        plan.set(3, dayEnd, hourEnd);
+        return plan;
+    }
+
+    // Five UNION ALL branches over the raw table, the hourly rollup, the daily rollup, the hourly rollup and the raw table.
+    // Each branch must select the same columns and filter on "platform = ? AND <time> >= ? AND <time> < ?".
+    public static String unionAll(String rawQuery, String hourlyQuery, String dailyQuery) {
+        return rawQuery + " UNION ALL " + hourlyQuery + " UNION ALL " + dailyQuery + " UNION ALL " + hourlyQuery + " UNION ALL " + rawQuery;
+    }
+
+    public int bind(PreparedStatement statement, int index, String platform) throws SQLException {
+        for (int segment = 0; segment < 5; segment++) {
+            statement.setString(index++, platform);
+            statement.setLong(index++, bounds[segment * 2]);
+            statement.setLong(index++, bounds[segment * 2 + 1]);
+        }
+        return index;
+    }
+
+    public static long floor(long time, long unit) {
+        return time - Math.floorMod(time, unit);
+    }
+
+    private static long ceil(long time, long unit) {
+        long floored = floor(time, unit);
+        return floored == time ? time : floored + unit;
+    }
+
+    private void set(int segment, long from, long to) {
+        bounds[segment * 2] = from;
+        bounds[segment * 2 + 1] = to;
+    }
+}
@@ -0,0 +1,96 @@
+package gg.gianluca.easystats.data;
+
+import gg.gianluca.easystats.database.Dialect;
+import gg.gianluca.easystats.model.JoinData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps the hourly and daily join rollups in step with the raw rows written in the same batch
+public class RollupWriter implements WriteBehindQueue.BatchListener {
+    private static final String[] PLATFORM_KEY = {"bucket_start", "platform", "client_type"};
+    private static final String[] COUNTRY_KEY = {"bucket_start", "platform", "country", "tier", "client_type"};
+
+    private final String platformHourlySql;
+    private final String platformDailySql;
+    private final String countryHourlySql;
+    private final String countryDailySql;
+
+    public RollupWriter(Dialect dialect) {
+        this.platformHourlySql = dialect.upsertIncrement("platform_stats_hourly", PLATFORM_KEY, "joins");
+        this.platformDailySql = dialect.upsertIncrement("platform_stats_daily", PLATFORM_KEY, "joins");
+        this.countryHourlySql = dialect.upsertIncrement("country_stats_hourly", COUNTRY_KEY, "joins");
+        this.countryDailySql = dialect.upsertIncrement("country_stats_daily", COUNTRY_KEY, "joins");
+    }
+
+    @Override
+    public void beforeCommit(Connection connection, List<WriteEvent> batch) throws SQLException {
+        Map<PlatformKey, Long> platformHourly = new HashMap<>();
+        Map<PlatformKey, Long> platformDaily = new HashMap<>();
+        Map<CountryKey, Long> countryHourly = new HashMap<>();
+        Map<CountryKey, Long> countryDaily = new HashMap<>();
+
+        for (WriteEvent event : batch) {
+            if (!(event.getPayload() instanceof JoinData join)) {
+                continue;
+            }
+            long time = join.getJoinTime().toEpochMilli();
+            long hour = RollupPlan.floor(time, RollupPlan.HOUR);
+            long day = RollupPlan.floor(time, RollupPlan.DAY);
+            String clientType = DataManager.clientType(join);
+
+            platformHourly.merge(new PlatformKey(hour, join.getPlatform(), clientType), 1L, Long::sum);
+            platformDaily.merge(new PlatformKey(day, join.getPlatform(), clientType), 1L, Long::sum);
+            countryHourly.merge(new CountryKey(hour, join.getPlatform(), join.getCountry(), join.getCountryTier(), clientType), 1L, Long::sum);
+            countryDaily.merge(new CountryKey(day, join.getPlatform(), join.getCountry(), join.getCountryTier(), clientType), 1L, Long::sum);
+        }
+
+        if (platformHourly.isEmpty()) {
+            return;
+        }
+        upsertPlatform(connection, platformHourlySql, platformHourly);
+        upsertPlatform(connection, platformDailySql, platformDaily);
+        upsertCountry(connection, countryHourlySql, countryHourly);
+        upsertCountry(connection, countryDailySql, countryDaily);
+    }
+
+    private void upsertPlatform(Connection connection, String sql, Map<PlatformKey, Long> counts) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Map.Entry<PlatformKey, Long> entry : counts.entrySet()) {
+                PlatformKey key = entry.getKey();
+                statement.setLong(1, key.bucket());
+                statement.setString(2, key.platform());
+                statement.setString(3, key.clientType());
+                statement.setLong(4, entry.getValue());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void upsertCountry(Connection connection, String sql, Map<CountryKey, Long> counts) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Map.Entry<CountryKey, Long> entry : counts.entrySet()) {
+                CountryKey key = entry.getKey();
+                statement.setLong(1, key.bucket());
+                statement.setString(2, key.platform());
+                statement.setString(3, key.country());
+                statement.setString(4, key.tier());
+                statement.setString(5, key.clientType());
+                statement.setLong(6, entry.getValue());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private record PlatformKey(long bucket, String platform, String clientType) {
+    }
+
+    private record CountryKey(long bucket, String platform, String country, String tier, String clientType) {
+    }
+}
@@ -0,0 +1,127 @@
+package gg.gianluca.easystats.data;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Lets concurrent loads of the same key share one execution: the first caller runs the loader, everyone who asks
+// while it runs waits for that result instead of running the query again. Each load carries a stamp; a caller only
+// takes the running load's result while its stamp is still current, otherwise it waits for that load to finish and
+// runs a fresh one, so there is never more than one execution per key at a time. Followers still honour their own
+// QueryContext deadline and cancellation. A leader whose own context was cancelled or timed out may have produced
+// nothing useful, so its followers start over and one of them loads on its own deadline.
+class SingleFlight<K, S> {
+    private static final Object RETRY = new Object();
+    // How often a waiting follower checks whether its own context was cancelled
+    private static final long POLL_MILLIS = 250L;
+
+    private final Map<K, Flight<S>> flights = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    <T> T run(K key, S stamp, QueryContext context, Predicate<S> current, Supplier<T> loader) {
+        while (true) {
+            Flight<S> flight = new Flight<>(stamp);
+            Flight<S> leader = flights.putIfAbsent(key, flight);
+            if (leader == null) {
+                return lead(key, flight, context, loader);
+            }
+
+            boolean join = current.test(leader.stamp());
+            Object result = await(leader.result(), context);
+            if (join && result != RETRY) {
+                if (result instanceof Failure failure) {
+                    throw failure.rethrow();
+                }
+                shared.increment();
+                @SuppressWarnings("unchecked")
+                T value = (T) result;
+                return value;
+            }
+            if (Thread.currentThread().isInterrupted() || context != null && (context.isCancelled() || context.isTimedOut())) {
+                return null;
+            }
+        }
+    }
+
+    private <T> T lead(K key, Flight<S> flight, QueryContext context, Supplier<T> loader) {
+        executions.increment();
+        try {
+            T value = loader.get();
+            boolean aborted = context != null && (context.isCancelled() || context.isTimedOut());
+            flight.result().complete(aborted ? RETRY : value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.result().complete(new Failure(e));
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> result, QueryContext context) {
+        try {
+            if (context == null) {
+                return result.get();
+            }
+            while (true) {
+                if (context.isCancelled() || context.isTimedOut()) {
+                    return RETRY;
+                }
+                long remaining = context.getRemainingMillis();
+                if (remaining <= 0) {
+                    context.expire();
+                    return RETRY;
+                }
+                try {
+                    return result.get(Math.min(remaining, POLL_MILLIS), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // check the context again
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (context != null) {
+                context.cancel();
+            }
+            return RETRY;
+        } catch (ExecutionException e) {
+            // Flights are only ever completed normally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    int getInFlight() {
+        return flights.size();
+    }
+
+    long getExecutions() {
+        return executions.sum();
+    }
+
+    long getShared() {
+        return shared.sum();
+    }
+
+    private record Flight<S>(S stamp, CompletableFuture<Object> result) {
+        private Flight(S stamp) {
+            this(stamp, new CompletableFuture<>());
+        }
+    }
+
+    // The leader's loader threw; followers that joined get the same failure, the others just load again
+    private record Failure(Throwable cause) {
+        private RuntimeException rethrow() {
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            return (RuntimeException) cause;
+        }
+    }
+}
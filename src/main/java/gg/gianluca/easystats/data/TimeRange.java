@@ -0,0 +1,99 @@
+package gg.gianluca.easystats.data;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+// Half-open [from, to) range of epoch milliseconds, bound as parameters so every backend runs the same SQL
+public final class TimeRange {
+    public static final TimeRange ALL = new TimeRange(0L, Long.MAX_VALUE);
+
+    private final long from;
+    private final long to;
+
+    private TimeRange(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static TimeRange between(long from, long to) {
+        return new TimeRange(from, to);
+    }
+
+    public static TimeRange last(long durationMillis) {
+        long now = System.currentTimeMillis();
+        return new TimeRange(now - durationMillis, now);
+    }
+
+    // Accepts filters like "30m", "1h", "7d" or "2w"; a bare number is read as days. Null means no filter.
+    public static TimeRange parse(String timeFilter) {
+        if (timeFilter == null || timeFilter.isEmpty()) {
+            return ALL;
+        }
+        return last(parseDuration(timeFilter));
+    }
+
+    public static long parseDuration(String timeFilter) {
+        String filter = timeFilter.trim().toLowerCase();
+        if (filter.isEmpty()) {
+            throw new IllegalArgumentException("Invalid time filter: " + timeFilter);
+        }
+        char unit = filter.charAt(filter.length() - 1);
+        String amount = Character.isDigit(unit) ? filter : filter.substring(0, filter.length() - 1);
+
+        long value;
+        try {
+            value = Long.parseLong(amount);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time filter: " + timeFilter);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid time filter: " + timeFilter);
+        }
+
+        // TimeUnit saturates at Long.MAX_VALUE, only the week multiplication can overflow
+        try {
+            return switch (unit) {
+                case 'm' -> TimeUnit.MINUTES.toMillis(value);
+                case 'h' -> TimeUnit.HOURS.toMillis(value);
+                case 'w' -> TimeUnit.DAYS.toMillis(Math.multiplyExact(value, 7L));
+                case 'd' -> TimeUnit.DAYS.toMillis(value);
+                default -> {
+                    if (!Character.isDigit(unit)) {
+                        throw new IllegalArgumentException("Invalid time filter: " + timeFilter);
+                    }
+                    yield TimeUnit.DAYS.toMillis(value);
+                }
+            };
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid time filter: " + timeFilter);
+        }
+    }
+
+    // Campaign dates are stored as yyyy-MM-dd; the end date is inclusive and an open campaign runs until now
+    public static TimeRange ofDates(String startDate, String endDate) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            long from = startDate != null ? LocalDate.parse(startDate).atStartOfDay(zone).toInstant().toEpochMilli() : 0L;
+            long to = endDate != null
+                    ? LocalDate.parse(endDate).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli()
+                    : System.currentTimeMillis();
+            return new TimeRange(from, to);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid campaign date: " + e.getParsedString());
+        }
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public boolean isAll() {
+        return from == ALL.from && to == ALL.to;
+    }
+}
@@ -0,0 +1,246 @@
+package gg.gianluca.easystats.data;
+
+import gg.gianluca.easystats.database.DatabaseFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class WriteBehindQueue implements Runnable {
+    private static final long DROP_WARNING_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 500L;
+
+    private final Logger logger;
+    private final DatabaseFactory databaseFactory;
+    private final BlockingQueue<WriteEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread writerThread;
+    private final List<BatchListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile long lastDropWarning;
+
+    public WriteBehindQueue(Logger logger, DatabaseFactory databaseFactory, int capacity, int batchSize, long flushIntervalMillis) {
+        this.logger = logger;
+        this.databaseFactory = databaseFactory;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+        this.writerThread = new Thread(this, "EasyStats-Writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void addBatchListener(BatchListener listener) {
+        listeners.add(listener);
+    }
+
+    // Never blocks: when the queue is full the event is dropped and counted
+    public boolean enqueue(WriteEvent event) {
+        if (offer(event)) {
+            return true;
+        }
+        long total = dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning > DROP_WARNING_INTERVAL) {
+            lastDropWarning = now;
+            logger.warning("Write queue is " + (running ? "full" : "shut down") + ", " + total + " events dropped so far");
+        }
+        return false;
+    }
+
+    // Like enqueue, for callers that keep the event themselves when the queue is full
+    public boolean offer(WriteEvent event) {
+        return running && queue.offer(event);
+    }
+
+    @Override
+    public void run() {
+        List<WriteEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                WriteEvent first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Group commit: keep collecting until the batch is full or the flush interval has passed
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (!running || remaining <= 0) {
+                        break;
+                    }
+                    WriteEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutdown is driven by the running flag; keep draining what is left
+            } catch (RuntimeException e) {
+                // This is the only writer; losing it would leave every later event stuck in the queue
+                logger.severe("Unexpected error in write queue: " + e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<WriteEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(batch);
+        } catch (SQLException | RuntimeException e) {
+            if (e instanceof SQLException sqlException && isTransient(sqlException)) {
+                // Still failing after the retries; splitting the batch would not help
+                dropped.addAndGet(batch.size());
+                logger.severe("Failed to write batch of " + batch.size() + " events: " + e.getMessage());
+            } else if (batch.size() > 1) {
+                // One bad event fails the whole transaction; halve the batch until it is on its own
+                int middle = batch.size() / 2;
+                flush(batch.subList(0, middle));
+                flush(batch.subList(middle, batch.size()));
+            } else {
+                dropped.incrementAndGet();
+                logger.severe("Dropped an event that could not be written: " + e.getMessage());
+            }
+            return;
+        }
+
+        committed.addAndGet(batch.size());
+        for (BatchListener listener : listeners) {
+            listener.afterCommit(batch);
+        }
+    }
+
+    // Retries failures that are likely to pass, like a pool timeout or a lost connection
+    private void write(List<WriteEvent> batch) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeOnce(batch);
+                return;
+            } catch (SQLException e) {
+                if (attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                logger.warning("Failed to write batch of " + batch.size() + " events, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void writeOnce(List<WriteEvent> batch) throws SQLException {
+        // Rows sharing a statement are sent as one JDBC batch
+        Map<String, List<WriteEvent>> statements = new LinkedHashMap<>();
+        Map<String, List<Integer>> rows = new LinkedHashMap<>();
+        for (WriteEvent event : batch) {
+            for (int i = 0; i < event.size(); i++) {
+                statements.computeIfAbsent(event.getSql(i), k -> new ArrayList<>()).add(event);
+                rows.computeIfAbsent(event.getSql(i), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        try (Connection connection = databaseFactory.getWriteConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, List<WriteEvent>> entry : statements.entrySet()) {
+                    List<WriteEvent> events = entry.getValue();
+                    List<Integer> indexes = rows.get(entry.getKey());
+                    try (PreparedStatement statement = connection.prepareStatement(entry.getKey())) {
+                        for (int i = 0; i < events.size(); i++) {
+                            events.get(i).bind(indexes.get(i), statement);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                for (BatchListener listener : listeners) {
+                    listener.beforeCommit(connection, batch);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        // Connection errors and deadlock or serialization rollbacks
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("40"));
+    }
+
+    // False when the writer is still running after the timeout
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive() || !queue.isEmpty()) {
+            logger.warning("Write queue did not drain in time, " + queue.size() + " events were not written");
+            return false;
+        }
+        return true;
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Events whose transaction has committed; pending only drops once the writer has taken a batch, before it commits
+    public long getCommittedCount() {
+        return committed.get();
+    }
+
+    // Runs on the writer thread inside the batch transaction, after the raw rows have been written. A batch that
+    // fails may be retried or split, so beforeCommit can see the same events more than once before one commit.
+    @FunctionalInterface
+    public interface BatchListener {
+        void beforeCommit(Connection connection, List<WriteEvent> batch) throws SQLException;
+
+        default void afterCommit(List<WriteEvent> batch) {
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package gg.gianluca.easystats.data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// One logical event; all of its rows are written in the same transaction
+public class WriteEvent {
+    private final List<String> statements = new ArrayList<>(1);
+    private final List<Binder> binders = new ArrayList<>(1);
+    private final List<String> tags = new ArrayList<>(2);
+    private final Object payload;
+
+    public WriteEvent(Object payload) {
+        this.payload = payload;
+    }
+
+    public WriteEvent(String sql, Binder binder) {
+        this((Object) null);
+        add(sql, binder);
+    }
+
+    public WriteEvent add(String sql, Binder binder) {
+        statements.add(sql);
+        binders.add(binder);
+        return this;
+    }
+
+    // Cache entries carrying this tag are dropped once the event is committed
+    public WriteEvent tag(String tag) {
+        tags.add(tag);
+        return this;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public String getSql(int index) {
+        return statements.get(index);
+    }
+
+    public void bind(int index, PreparedStatement statement) throws SQLException {
+        binders.get(index).bind(statement);
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+
+    @FunctionalInterface
+    public interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+}
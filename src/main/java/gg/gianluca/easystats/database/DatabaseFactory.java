@@ -1,39 +1,159 @@
 package gg.gianluca.easystats.database;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import gg.gianluca.easystats.EasyStats;
-import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
 
 import java.io.File;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseFactory {
-    private final EasyStats plugin;
-    private final String databasePath;
+    private final File dataFolder;
+    private final Dialect dialect;
+    private final HikariDataSource writeDataSource;
+    // Same pool as the writer on MySQL; a separate pool of read-only connections on SQLite
+    private final HikariDataSource readDataSource;
 
     public DatabaseFactory(EasyStats plugin) {
-        this.plugin = plugin;
-        this.databasePath = new File(plugin.getDataFolder(), "database.db").getAbsolutePath();
+        this(plugin.getConfig().getConfigurationSection("database"), plugin.getDataFolder());
+    }
+
+    public DatabaseFactory(ConfigurationSection config, File dataFolder) {
+        this.dataFolder = dataFolder;
+        if (config == null) {
+            config = new MemoryConfiguration();
+        }
         createDataFolder();
+        this.dialect = Dialect.fromConfig(config.getString("type", "sqlite"));
+        if (dialect == Dialect.MYSQL) {
+            this.writeDataSource = new HikariDataSource(createMySQLConfig(config));
+            this.readDataSource = writeDataSource;
+        } else {
+            // The writer opens the file first so that it is already in WAL mode when the readers connect
+            this.writeDataSource = new HikariDataSource(createSQLiteWriterConfig(config));
+            this.readDataSource = new HikariDataSource(createSQLiteReaderConfig(config));
+        }
     }
 
     private void createDataFolder() {
-        if (!plugin.getDataFolder().exists()) {
-            plugin.getDataFolder().mkdirs();
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
         }
     }
 
-    public Connection getConnection() throws SQLException {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            return DriverManager.getConnection("jdbc:sqlite:" + databasePath);
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("SQLite JDBC driver not found", e);
+    private HikariConfig createMySQLConfig(ConfigurationSection config) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("EasyStats-MySQL");
+        hikari.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        hikari.setJdbcUrl("jdbc:mysql://" + config.getString("mysql.host", "localhost") + ":" +
+                config.getInt("mysql.port", 3306) + "/" + config.getString("mysql.database", "easystats"));
+        hikari.setUsername(config.getString("mysql.username", "root"));
+        hikari.setPassword(config.getString("mysql.password", ""));
+
+        // Pool sizing from database.mysql.pool
+        hikari.setMaximumPoolSize(config.getInt("mysql.pool.maximum-pool-size", 10));
+        hikari.setMinimumIdle(config.getInt("mysql.pool.minimum-idle", 5));
+        hikari.setIdleTimeout(config.getLong("mysql.pool.idle-timeout", 300000L));
+        hikari.setMaxLifetime(config.getLong("mysql.pool.max-lifetime", 600000L));
+        hikari.setConnectionTimeout(config.getLong("mysql.pool.connection-timeout", 5000L));
+
+        // Driver-side statement caching and multi-row rewriting of JDBC batches
+        hikari.addDataSourceProperty("cachePrepStmts", "true");
+        hikari.addDataSourceProperty("prepStmtCacheSize", "250");
+        hikari.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        hikari.addDataSourceProperty("useServerPrepStmts", "true");
+        hikari.addDataSourceProperty("rewriteBatchedStatements", "true");
+        hikari.addDataSourceProperty("useLocalSessionState", "true");
+        hikari.addDataSourceProperty("cacheResultSetMetadata", "true");
+        hikari.addDataSourceProperty("cacheServerConfiguration", "true");
+        hikari.addDataSourceProperty("elideSetAutoCommits", "true");
+        hikari.addDataSourceProperty("maintainTimeStats", "false");
+
+        // Anything under database.mysql.properties is passed straight to the driver
+        ConfigurationSection properties = config.getConfigurationSection("mysql.properties");
+        if (properties != null) {
+            for (String key : properties.getKeys(false)) {
+                hikari.addDataSourceProperty(key, properties.getString(key));
+            }
         }
+        return hikari;
+    }
+
+    // SQLite only allows one writer at a time, so every write goes through a single long-lived connection
+    // that waits on busy_timeout instead of failing with SQLITE_BUSY
+    private HikariConfig createSQLiteWriterConfig(ConfigurationSection config) {
+        SQLiteConfig sqlite = createSQLitePragmas(config);
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        sqlite.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        return createSQLitePool("EasyStats-SQLite-Writer", sqlite, config, 1);
+    }
+
+    // In WAL mode readers see the last committed snapshot and never block the writer
+    private HikariConfig createSQLiteReaderConfig(ConfigurationSection config) {
+        SQLiteConfig sqlite = createSQLitePragmas(config);
+        sqlite.setReadOnly(true);
+        return createSQLitePool("EasyStats-SQLite-Reader", sqlite, config, Math.max(1, config.getInt("sqlite.read-pool-size", 4)));
+    }
+
+    private SQLiteConfig createSQLitePragmas(ConfigurationSection config) {
+        SQLiteConfig sqlite = new SQLiteConfig();
+        // NORMAL is safe in WAL mode: a power loss can only lose the last commits, never corrupt the file
+        sqlite.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(config.getString("sqlite.synchronous", "NORMAL").toUpperCase()));
+        // Negative cache_size is in KiB rather than pages
+        sqlite.setCacheSize(-config.getInt("sqlite.cache-size-kb", 16384));
+        sqlite.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(config.getLong("sqlite.mmap-size-mb", 256L) * 1024L * 1024L));
+        sqlite.setBusyTimeout(config.getInt("sqlite.busy-timeout-ms", 5000));
+        sqlite.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        return sqlite;
+    }
+
+    private HikariConfig createSQLitePool(String name, SQLiteConfig sqlite, ConfigurationSection config, int size) {
+        SQLiteDataSource dataSource = new SQLiteDataSource(sqlite);
+        dataSource.setUrl("jdbc:sqlite:" + new File(dataFolder, config.getString("sqlite.file", "database.db")).getAbsolutePath());
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(name);
+        hikari.setDataSource(dataSource);
+        // Connections are opened once and kept for the lifetime of the plugin
+        hikari.setMaximumPoolSize(size);
+        hikari.setMinimumIdle(size);
+        hikari.setMaxLifetime(0);
+        hikari.setIdleTimeout(0);
+        return hikari;
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    public HikariDataSource getWriteDataSource() {
+        return writeDataSource;
+    }
+
+    public HikariDataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    // Use for anything that changes the database, including schema migrations
+    public Connection getWriteConnection() throws SQLException {
+        return writeDataSource.getConnection();
+    }
+
+    public Connection getReadConnection() throws SQLException {
+        return readDataSource.getConnection();
     }
 
     public void close() {
-        // Nothing to close at factory level since connections are closed individually
+        if (readDataSource != writeDataSource && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
+        if (!writeDataSource.isClosed()) {
+            writeDataSource.close();
+        }
     }
-} 
\ No newline at end of file
+}
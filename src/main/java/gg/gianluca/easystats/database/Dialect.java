@@ -0,0 +1,40 @@
+package gg.gianluca.easystats.database;
+
+public enum Dialect {
+    SQLITE,
+    MYSQL;
+
+    public String autoIncrementPrimaryKey() {
+        // INTEGER PRIMARY KEY makes the column an alias for SQLite's rowid
+        return this == MYSQL ? "INT AUTO_INCREMENT PRIMARY KEY" : "INTEGER PRIMARY KEY";
+    }
+
+    // INSERT that adds to valueColumn when a row with the same key already exists
+    public String upsertIncrement(String table, String[] keyColumns, String valueColumn) {
+        String keys = String.join(", ", keyColumns);
+        String placeholders = "?, ".repeat(keyColumns.length) + "?";
+        String insert = "INSERT INTO " + table + " (" + keys + ", " + valueColumn + ") VALUES (" + placeholders + ")";
+        if (this == MYSQL) {
+            return insert + " ON DUPLICATE KEY UPDATE " + valueColumn + " = " + valueColumn + " + VALUES(" + valueColumn + ")";
+        }
+        return insert + " ON CONFLICT (" + keys + ") DO UPDATE SET " + valueColumn + " = " + valueColumn + " + excluded." + valueColumn;
+    }
+
+    // INSERT that keeps the larger of the stored and the new valueColumn when the key already exists
+    public String upsertMax(String table, String[] keyColumns, String valueColumn) {
+        String keys = String.join(", ", keyColumns);
+        String placeholders = "?, ".repeat(keyColumns.length) + "?";
+        String insert = "INSERT INTO " + table + " (" + keys + ", " + valueColumn + ") VALUES (" + placeholders + ")";
+        if (this == MYSQL) {
+            return insert + " ON DUPLICATE KEY UPDATE " + valueColumn + " = GREATEST(" + valueColumn + ", VALUES(" + valueColumn + "))";
+        }
+        return insert + " ON CONFLICT (" + keys + ") DO UPDATE SET " + valueColumn + " = MAX(" + valueColumn + ", excluded." + valueColumn + ")";
+    }
+
+    public static Dialect fromConfig(String type) {
+        if (type != null && type.equalsIgnoreCase("mysql")) {
+            return MYSQL;
+        }
+        return SQLITE;
+    }
+}
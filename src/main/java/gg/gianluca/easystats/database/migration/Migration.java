@@ -0,0 +1,35 @@
+package gg.gianluca.easystats.database.migration;
+
+import gg.gianluca.easystats.database.Dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class Migration {
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void apply(Connection connection, Dialect dialect) throws SQLException {
+        step.apply(connection, dialect);
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection, Dialect dialect) throws SQLException;
+    }
+}
@@ -0,0 +1,431 @@
+package gg.gianluca.easystats.database.migration;
+
+import gg.gianluca.easystats.country.CountryTiers;
+import gg.gianluca.easystats.database.Dialect;
+import gg.gianluca.easystats.session.SessionHistogram;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Every migration must be safe to run against a database that already has its changes
+public final class Migrations {
+    private Migrations() {
+    }
+
+    public static List<Migration> all() {
+        return List.of(
+                new Migration(1, "Create base tables", Migrations::createBaseTables),
+                new Migration(2, "Convert event times to epoch milliseconds", Migrations::convertEventTimes),
+                new Migration(3, "Add composite indexes on fact tables", Migrations::createFactIndexes),
+                new Migration(4, "Record client type on joins", Migrations::addJoinClientType),
+                new Migration(5, "Create hourly and daily join rollups", Migrations::createJoinRollups),
+                new Migration(6, "Create all-time join and revenue totals", Migrations::createTotals),
+                new Migration(7, "Store countries as ISO codes", Migrations::convertCountryCodes),
+                new Migration(8, "Create session journal and summaries", Migrations::createSessionTables),
+                new Migration(9, "Add session length histograms", Migrations::createSessionHistograms)
+        );
+    }
+
+    private static void createBaseTables(Connection connection, Dialect dialect) throws SQLException {
+        String id = "id " + dialect.autoIncrementPrimaryKey() + ",";
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS platform_stats (" +
+                    id +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "client_type VARCHAR(20) NOT NULL," +
+                    "join_time BIGINT NOT NULL" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS country_stats (" +
+                    id +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "country VARCHAR(50) NOT NULL," +
+                    "tier VARCHAR(10) NOT NULL," +
+                    "client_type VARCHAR(20) NOT NULL," +
+                    "join_time BIGINT NOT NULL" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS revenue (" +
+                    id +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "amount DECIMAL(10,2) NOT NULL," +
+                    "currency VARCHAR(3) NOT NULL," +
+                    "timestamp BIGINT NOT NULL" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS campaigns (" +
+                    id +
+                    "name VARCHAR(50) NOT NULL UNIQUE," +
+                    "description TEXT," +
+                    "start_date DATE NOT NULL," +
+                    "end_date DATE," +
+                    "hostname VARCHAR(255)," +
+                    "budget DECIMAL(10,2) NOT NULL" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS joins (" +
+                    id +
+                    "uuid VARCHAR(36) NOT NULL," +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "hostname VARCHAR(255) NOT NULL," +
+                    "join_time BIGINT NOT NULL" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS player_counts (" +
+                    id +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "count INT NOT NULL," +
+                    "timestamp BIGINT NOT NULL" +
+                    ")");
+        }
+    }
+
+    // Installs created before event times were stored as epoch milliseconds still have TIMESTAMP columns
+    private static void convertEventTimes(Connection connection, Dialect dialect) throws SQLException {
+        convertEventTime(connection, dialect, "platform_stats", "join_time");
+        convertEventTime(connection, dialect, "country_stats", "join_time");
+        convertEventTime(connection, dialect, "joins", "join_time");
+        convertEventTime(connection, dialect, "revenue", "timestamp");
+        convertEventTime(connection, dialect, "player_counts", "timestamp");
+    }
+
+    private static void convertEventTime(Connection connection, Dialect dialect, String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            if (dialect == Dialect.MYSQL) {
+                String type = getColumnType(connection, table, column);
+                if (type != null && type.equalsIgnoreCase("BIGINT")) {
+                    return;
+                }
+                // Every ALTER commits on its own, so a rerun after a failure skips the steps that already happened
+                boolean copied = hasColumn(connection, table, column + "_ms");
+                if (type == null && !copied) {
+                    return;
+                }
+                if (type != null) {
+                    if (!copied) {
+                        stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + "_ms BIGINT");
+                    }
+                    stmt.execute("UPDATE " + table + " SET " + column + "_ms = COALESCE(ROUND(UNIX_TIMESTAMP(" + column + ") * 1000), 0)");
+                    stmt.execute("ALTER TABLE " + table + " DROP COLUMN " + column);
+                }
+                stmt.execute("ALTER TABLE " + table + " CHANGE " + column + "_ms " + column + " BIGINT NOT NULL");
+            } else {
+                // SQLite keeps the declared type, so only rows written by CURRENT_TIMESTAMP (text) need rewriting
+                stmt.execute("UPDATE " + table + " SET " + column + " = CAST(strftime('%s', " + column + ") AS INTEGER) * 1000 " +
+                        "WHERE typeof(" + column + ") = 'text'");
+            }
+        }
+    }
+
+    private static void createFactIndexes(Connection connection, Dialect dialect) throws SQLException {
+        createIndex(connection, "platform_stats", "idx_platform_stats_platform_time", "platform, join_time, client_type");
+        createIndex(connection, "country_stats", "idx_country_stats_platform_time", "platform, join_time, country, tier, client_type");
+        createIndex(connection, "revenue", "idx_revenue_platform_time", "platform, timestamp, currency, amount");
+        createIndex(connection, "joins", "idx_joins_hostname_time", "hostname, join_time, uuid");
+        createIndex(connection, "player_counts", "idx_player_counts_platform_time", "platform, timestamp, count");
+    }
+
+    private static void addJoinClientType(Connection connection, Dialect dialect) throws SQLException {
+        if (hasColumn(connection, "joins", "client_type")) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE joins ADD COLUMN client_type VARCHAR(20) NOT NULL DEFAULT 'java'");
+        }
+    }
+
+    private static void createJoinRollups(Connection connection, Dialect dialect) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String granularity : new String[]{"hourly", "daily"}) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS platform_stats_" + granularity + " (" +
+                        "bucket_start BIGINT NOT NULL," +
+                        "platform VARCHAR(50) NOT NULL," +
+                        "client_type VARCHAR(20) NOT NULL," +
+                        "joins BIGINT NOT NULL," +
+                        "PRIMARY KEY (bucket_start, platform, client_type)" +
+                        ")");
+                stmt.execute("CREATE TABLE IF NOT EXISTS country_stats_" + granularity + " (" +
+                        "bucket_start BIGINT NOT NULL," +
+                        "platform VARCHAR(50) NOT NULL," +
+                        "country VARCHAR(50) NOT NULL," +
+                        "tier VARCHAR(10) NOT NULL," +
+                        "client_type VARCHAR(20) NOT NULL," +
+                        "joins BIGINT NOT NULL," +
+                        "PRIMARY KEY (bucket_start, platform, country, tier, client_type)" +
+                        ")");
+            }
+        }
+
+        // Reads filter on platform first, the primary keys lead with the bucket for the writer's upserts
+        for (String granularity : new String[]{"hourly", "daily"}) {
+            createIndex(connection, "platform_stats_" + granularity, "idx_platform_stats_" + granularity + "_platform",
+                    "platform, bucket_start, client_type, joins");
+            createIndex(connection, "country_stats_" + granularity, "idx_country_stats_" + granularity + "_platform",
+                    "platform, bucket_start, country, tier, client_type, joins");
+        }
+
+        backfillRollup(connection, "platform_stats_hourly", "platform_stats", "platform, client_type", 3600000L);
+        backfillRollup(connection, "platform_stats_daily", "platform_stats", "platform, client_type", 86400000L);
+        backfillRollup(connection, "country_stats_hourly", "country_stats", "platform, country, tier, client_type", 3600000L);
+        backfillRollup(connection, "country_stats_daily", "country_stats", "platform, country, tier, client_type", 86400000L);
+    }
+
+    private static void backfillRollup(Connection connection, String rollup, String source, String columns, long bucketSize) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS count FROM " + rollup)) {
+                if (rs.next() && rs.getLong("count") > 0) {
+                    return;
+                }
+            }
+            String bucket = "join_time - (join_time % " + bucketSize + ")";
+            stmt.execute("INSERT INTO " + rollup + " (bucket_start, " + columns + ", joins) " +
+                    "SELECT " + bucket + ", " + columns + ", COUNT(*) FROM " + source + " GROUP BY " + bucket + ", " + columns);
+        }
+    }
+
+    // Seeds the in-memory live aggregates on startup; the backfill covers everything recorded before this table existed
+    private static void createTotals(Connection connection, Dialect dialect) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS join_totals (" +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "client_type VARCHAR(20) NOT NULL," +
+                    "country VARCHAR(50) NOT NULL," +
+                    "tier VARCHAR(10) NOT NULL," +
+                    "joins BIGINT NOT NULL," +
+                    "PRIMARY KEY (platform, client_type, country, tier)" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS revenue_totals (" +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "currency VARCHAR(3) NOT NULL," +
+                    "amount_cents BIGINT NOT NULL," +
+                    "PRIMARY KEY (platform, currency)" +
+                    ")");
+
+            if (isEmpty(stmt, "join_totals")) {
+                stmt.execute("INSERT INTO join_totals (platform, client_type, country, tier, joins) " +
+                        "SELECT platform, LOWER(client_type), country, tier, COUNT(*) FROM country_stats " +
+                        "GROUP BY platform, LOWER(client_type), country, tier");
+            }
+            if (isEmpty(stmt, "revenue_totals")) {
+                stmt.execute("INSERT INTO revenue_totals (platform, currency, amount_cents) " +
+                        "SELECT platform, currency, ROUND(SUM(amount) * 100) FROM revenue GROUP BY platform, currency");
+            }
+        }
+    }
+
+    // Country names from older versions become ISO 3166-1 alpha-2 codes, names nobody recognises become XX
+    private static void convertCountryCodes(Connection connection, Dialect dialect) throws SQLException {
+        convertCountryCodes(connection, dialect, "country_stats", null, null);
+        for (String granularity : new String[]{"hourly", "daily"}) {
+            convertCountryCodes(connection, dialect, "country_stats_" + granularity,
+                    new String[]{"bucket_start", "platform", "tier", "client_type"}, "joins");
+        }
+        convertCountryCodes(connection, dialect, "join_totals", new String[]{"platform", "client_type", "tier"}, "joins");
+
+        if (dialect == Dialect.MYSQL) {
+            try (Statement stmt = connection.createStatement()) {
+                for (String table : new String[]{"country_stats", "country_stats_hourly", "country_stats_daily", "join_totals"}) {
+                    if (!"CHAR".equalsIgnoreCase(getColumnType(connection, table, "country"))) {
+                        stmt.execute("ALTER TABLE " + table + " MODIFY country CHAR(2) NOT NULL");
+                    }
+                }
+            }
+        }
+    }
+
+    // Tables keyed on the country can end up with two rows for one code, so their counts are merged with an upsert
+    private static void convertCountryCodes(Connection connection, Dialect dialect, String table, String[] keyColumns, String valueColumn) throws SQLException {
+        Map<String, String> codes = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT country FROM " + table)) {
+            while (rs.next()) {
+                String country = rs.getString("country");
+                if (!CountryTiers.isIsoCode(country)) {
+                    String code = CountryTiers.toIsoCode(country);
+                    codes.put(country, code != null ? code : CountryTiers.UNKNOWN_CODE);
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> entry : codes.entrySet()) {
+            if (keyColumns == null) {
+                try (PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET country = ? WHERE country = ?")) {
+                    statement.setString(1, entry.getValue());
+                    statement.setString(2, entry.getKey());
+                    statement.executeUpdate();
+                }
+                continue;
+            }
+
+            List<Object[]> rows = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + String.join(", ", keyColumns) + ", " + valueColumn + " FROM " + table + " WHERE country = ?")) {
+                statement.setString(1, entry.getKey());
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Object[] row = new Object[keyColumns.length + 1];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = rs.getObject(i + 1);
+                        }
+                        rows.add(row);
+                    }
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE country = ?")) {
+                statement.setString(1, entry.getKey());
+                statement.executeUpdate();
+            }
+
+            String[] columns = new String[keyColumns.length + 1];
+            System.arraycopy(keyColumns, 0, columns, 0, keyColumns.length);
+            columns[keyColumns.length] = "country";
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsertIncrement(table, columns, valueColumn))) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < keyColumns.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    statement.setString(keyColumns.length + 1, entry.getValue());
+                    statement.setObject(keyColumns.length + 2, row[keyColumns.length]);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    // Start and end records are appended to the journal and periodically compacted into sessions and summaries
+    private static void createSessionTables(Connection connection, Dialect dialect) throws SQLException {
+        String id = "id " + dialect.autoIncrementPrimaryKey() + ",";
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS session_journal (" +
+                    id +
+                    "uuid VARCHAR(36) NOT NULL," +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "start_time BIGINT NOT NULL," +
+                    "end_time BIGINT" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS sessions (" +
+                    id +
+                    "uuid VARCHAR(36) NOT NULL," +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "start_time BIGINT NOT NULL," +
+                    "end_time BIGINT NOT NULL," +
+                    "duration BIGINT NOT NULL" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS session_summaries (" +
+                    "platform VARCHAR(50) NOT NULL PRIMARY KEY," +
+                    "sessions BIGINT NOT NULL DEFAULT 0," +
+                    "total_duration BIGINT NOT NULL DEFAULT 0" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS session_state (" +
+                    "name VARCHAR(50) NOT NULL PRIMARY KEY," +
+                    "value BIGINT NOT NULL" +
+                    ")");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS count FROM session_state WHERE name = 'heartbeat'")) {
+                if (!rs.next() || rs.getLong("count") == 0) {
+                    stmt.execute("INSERT INTO session_state (name, value) VALUES ('heartbeat', 0)");
+                }
+            }
+        }
+        createIndex(connection, "session_journal", "idx_session_journal_session", "uuid, start_time");
+        createIndex(connection, "sessions", "idx_sessions_platform_end", "platform, end_time, duration");
+    }
+
+    // Buckets follow SessionHistogram, so percentiles survive restarts along with the totals
+    private static void createSessionHistograms(Connection connection, Dialect dialect) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS session_histograms (" +
+                    "platform VARCHAR(50) NOT NULL," +
+                    "bucket INT NOT NULL," +
+                    "sessions BIGINT NOT NULL," +
+                    "PRIMARY KEY (platform, bucket)" +
+                    ")");
+            if (!hasColumn(connection, "session_summaries", "max_duration")) {
+                stmt.execute("ALTER TABLE session_summaries ADD COLUMN max_duration BIGINT NOT NULL DEFAULT 0");
+                stmt.execute("UPDATE session_summaries SET max_duration = COALESCE((SELECT MAX(duration) FROM sessions " +
+                        "WHERE sessions.platform = session_summaries.platform), 0)");
+            }
+            if (!isEmpty(stmt, "session_histograms")) {
+                return;
+            }
+        }
+
+        // Bucketing happens in Java, so the backfill reads the durations compacted so far
+        Map<String, long[]> histograms = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT platform, duration FROM sessions")) {
+            while (rs.next()) {
+                histograms.computeIfAbsent(rs.getString("platform"), k -> new long[SessionHistogram.BUCKETS])
+                        [SessionHistogram.bucketOf(rs.getLong("duration"))]++;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO session_histograms (platform, bucket, sessions) VALUES (?, ?, ?)")) {
+            for (Map.Entry<String, long[]> entry : histograms.entrySet()) {
+                long[] counts = entry.getValue();
+                for (int bucket = 0; bucket < counts.length; bucket++) {
+                    if (counts[bucket] > 0) {
+                        statement.setString(1, entry.getKey());
+                        statement.setInt(2, bucket);
+                        statement.setLong(3, counts[bucket]);
+                        statement.addBatch();
+                    }
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static boolean isEmpty(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS count FROM " + table)) {
+            return !rs.next() || rs.getLong("count") == 0;
+        }
+    }
+
+    // MySQL has no CREATE INDEX IF NOT EXISTS, so check the catalog first
+    static void createIndex(Connection connection, String table, String name, String columns) throws SQLException {
+        if (hasIndex(connection, table, name)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    static boolean hasIndex(Connection connection, String table, String name) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (name.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        return getColumnType(connection, table, column) != null;
+    }
+
+    static String getColumnType(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return rs.getString("TYPE_NAME");
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package gg.gianluca.easystats.database.migration;
+
+import gg.gianluca.easystats.database.Dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+public class SchemaMigrator {
+    private final Logger logger;
+    private final Dialect dialect;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(Logger logger, Dialect dialect, List<Migration> migrations) {
+        this.logger = logger;
+        this.dialect = dialect;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    public void migrate(Connection connection) throws SQLException {
+        createVersionTable(connection);
+        Set<Integer> applied = getAppliedVersions(connection);
+
+        for (Migration migration : migrations) {
+            if (applied.contains(migration.getVersion())) {
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                migration.apply(connection, dialect);
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                    stmt.setInt(1, migration.getVersion());
+                    stmt.setString(2, migration.getDescription());
+                    stmt.setLong(3, System.currentTimeMillis());
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Schema migration " + migration.getVersion() + " (" + migration.getDescription() + ") failed: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            logger.info("Applied schema migration " + migration.getVersion() + ": " + migration.getDescription() +
+                    " (" + (System.currentTimeMillis() - start) + " ms)");
+        }
+    }
+
+    public int getCurrentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) AS version FROM schema_version")) {
+            return rs.next() ? rs.getInt("version") : 0;
+        }
+    }
+
+    private void createVersionTable(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY," +
+                    "description VARCHAR(255) NOT NULL," +
+                    "applied_at BIGINT NOT NULL" +
+                    ")");
+        }
+    }
+
+    private Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt("version"));
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,162 @@
+package gg.gianluca.easystats.expansion;
+
+import gg.gianluca.easystats.api.EasyStatsAPI;
+import gg.gianluca.easystats.country.CountryTiers;
+import gg.gianluca.easystats.placeholder.CompiledPlaceholder;
+import gg.gianluca.easystats.platform.PlatformResolver;
+import gg.gianluca.easystats.session.SessionWindow;
+
+import java.util.Locale;
+import java.util.Map;
+
+// Turns %easystats_<type>_<platform>_...% parameters into CompiledPlaceholders. Everything that only depends on
+// the parameters is parsed here, once; the platform is still resolved on every evaluation so a reload of
+// platforms.yml applies to placeholders that were compiled before it.
+public class PlaceholderCompiler {
+    private final EasyStatsAPI api;
+    private final PlatformResolver platformResolver;
+
+    public PlaceholderCompiler(EasyStatsAPI api, PlatformResolver platformResolver) {
+        this.api = api;
+        this.platformResolver = platformResolver;
+    }
+
+    // Null for parameters that don't name a placeholder
+    public CompiledPlaceholder compile(String params) {
+        String[] args = params.split("_");
+        if (args.length < 3) return null;
+
+        switch (args[0].toLowerCase(Locale.ROOT)) {
+            case "platform":
+                // Stats may contain underscores, like java_percent
+                return compilePlatform(args[1], params.split("_", 3)[2].toLowerCase(Locale.ROOT));
+            case "country":
+                return args.length < 4 ? null : compileCountry(args[1], args[2].toLowerCase(Locale.ROOT), args[3]);
+            case "revenue":
+                return compileRevenue(args[1], args[2].toUpperCase(Locale.ROOT));
+            case "campaign":
+                return compileCampaign(args[2], args.length > 3 ? args[3].toLowerCase(Locale.ROOT) : null);
+            case "session":
+                return compileSession(args[1], args[2].toLowerCase(Locale.ROOT), args.length > 3 ? args[3] : null);
+            default:
+                return null;
+        }
+    }
+
+    // Accept a hostname as well as a platform name from platforms.yml
+    private String platform(String name) {
+        return platformResolver.resolveName(name);
+    }
+
+    private CompiledPlaceholder compilePlatform(String name, String stat) {
+        switch (stat) {
+            case "total":
+            case "java":
+            case "bedrock":
+                return () -> String.valueOf(api.getPlatformStats(platform(name), null).getOrDefault(stat, 0L));
+            case "java_percent":
+            case "bedrock_percent":
+                String client = stat.substring(0, stat.indexOf('_'));
+                return () -> {
+                    Map<String, Long> stats = api.getPlatformStats(platform(name), null);
+                    long total = stats.getOrDefault("total", 0L);
+                    return api.formatPercentage(total > 0 ? stats.getOrDefault(client, 0L) * 100.0 / total : 0.0);
+                };
+            default:
+                return null;
+        }
+    }
+
+    private CompiledPlaceholder compileCountry(String name, String tier, String country) {
+        // Countries are stored as ISO codes; names from countries.yml work too
+        String isoCode = CountryTiers.toIsoCode(country);
+        if (isoCode == null) {
+            return () -> "0";
+        }
+        return () -> {
+            Map<String, Map<String, Long>> countries = api.getCountryStats(platform(name), null).get(tier);
+            Map<String, Long> clientStats = countries != null ? countries.get(isoCode) : null;
+            long total = 0;
+            if (clientStats != null) {
+                for (long joins : clientStats.values()) {
+                    total += joins;
+                }
+            }
+            return String.valueOf(total);
+        };
+    }
+
+    private CompiledPlaceholder compileRevenue(String name, String currency) {
+        return () -> api.formatNumber(api.getRevenueStats(platform(name), null).getOrDefault(currency, 0.0));
+    }
+
+    private CompiledPlaceholder compileCampaign(String campaignName, String stat) {
+        if (stat == null) {
+            return () -> api.formatNumber(revenue(campaignName));
+        }
+        return () -> {
+            Map<String, Object> campaign = api.getCampaign(campaignName);
+            if (campaign == null) return "0";
+
+            // The budget is what the campaign cost
+            double cost = ((Number) campaign.get("budget")).doubleValue();
+            double revenue = revenue(campaignName);
+            double profit = revenue - cost;
+            switch (stat) {
+                case "cost":
+                    return api.formatNumber(cost);
+                case "roi":
+                    return api.formatPercentage(cost > 0 ? (profit / cost) * 100 : 0);
+                case "profit":
+                    return api.formatNumber(profit);
+                default:
+                    return api.formatNumber(revenue);
+            }
+        };
+    }
+
+    // Empty metrics for a campaign that doesn't exist
+    private double revenue(String campaignName) {
+        Object revenue = api.getCampaignMetrics(campaignName).get("revenue");
+        return revenue instanceof Number number ? number.doubleValue() : 0.0;
+    }
+
+    private CompiledPlaceholder compileSession(String name, String stat, String windowName) {
+        // %easystats_session_<platform>_<stat>_<1h|24h|7d>% reads the sliding windows instead of all-time stats
+        if (windowName != null) {
+            SessionWindow window = SessionWindow.fromString(windowName);
+            if (window == null) return null;
+            String key;
+            switch (stat) {
+                case "avg":
+                    key = "average";
+                    break;
+                case "count":
+                    return () -> String.valueOf(api.getSessionWindowStats(platform(name), window.getName()).get("sessions"));
+                case "p50":
+                case "p90":
+                case "p99":
+                case "max":
+                    key = stat;
+                    break;
+                default:
+                    return null;
+            }
+            return () -> api.formatDuration(api.getSessionWindowStats(platform(name), window.getName()).get(key));
+        }
+
+        switch (stat) {
+            // total was always the all-time average as well
+            case "avg":
+            case "total":
+                return () -> api.formatDuration((long) api.getAverageSessionTime(platform(name)));
+            case "p50":
+            case "p90":
+            case "p99":
+            case "max":
+                return () -> api.formatDuration(api.getSessionPercentiles(platform(name)).get(stat));
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package gg.gianluca.easystats.hostname;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+// Captures first and forgets last, so every other listener sees the hostname for the whole connection
+public class HostnameListener implements Listener {
+    private final HostnameTracker tracker;
+
+    public HostnameListener(HostnameTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        tracker.capture(event.getPlayer().getUniqueId(), event.getHostname());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            tracker.remove(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        tracker.remove(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,65 @@
+package gg.gianluca.easystats.hostname;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The hostname each online player connected with, taken from the login handshake once per connection.
+// Everything that groups players by hostname reads it from here instead of resolving addresses.
+public class HostnameTracker {
+    public static final String UNKNOWN = "unknown";
+
+    private final Map<UUID, String> hostnames = new ConcurrentHashMap<>();
+
+    public String capture(UUID playerId, String rawHostname) {
+        String hostname = normalize(rawHostname);
+        hostnames.put(playerId, hostname);
+        return hostname;
+    }
+
+    public String getHostname(UUID playerId) {
+        return hostnames.getOrDefault(playerId, UNKNOWN);
+    }
+
+    public void remove(UUID playerId) {
+        hostnames.remove(playerId);
+    }
+
+    // Snapshot of every online player's hostname
+    public Map<UUID, String> getHostnames() {
+        return Map.copyOf(hostnames);
+    }
+
+    // The handshake field can carry more than the hostname: BungeeCord and Floodgate forwarding append data
+    // after a NUL byte, clients send the port, and SRV lookups may leave a trailing dot
+    public static String normalize(String rawHostname) {
+        if (rawHostname == null) {
+            return UNKNOWN;
+        }
+
+        String hostname = rawHostname;
+        int nul = hostname.indexOf('\0');
+        if (nul >= 0) {
+            hostname = hostname.substring(0, nul);
+        }
+
+        if (hostname.startsWith("[")) {
+            // IPv6 literal, possibly followed by a port
+            int end = hostname.indexOf(']');
+            hostname = end > 0 ? hostname.substring(1, end) : hostname.substring(1);
+        } else {
+            int colon = hostname.lastIndexOf(':');
+            if (colon >= 0 && hostname.indexOf(':') == colon) {
+                hostname = hostname.substring(0, colon);
+            }
+        }
+
+        while (hostname.endsWith(".")) {
+            hostname = hostname.substring(0, hostname.length() - 1);
+        }
+
+        hostname = hostname.trim().toLowerCase(Locale.ROOT);
+        return hostname.isEmpty() ? UNKNOWN : hostname;
+    }
+}
@@ -1,46 +1,98 @@
 package gg.gianluca.easystats.listener;
 
 import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.client.ClientTypeDetector;
+import gg.gianluca.easystats.model.JoinData;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class PlayerListener implements Listener {
+    // Far longer than pre-login to login ever takes
+    private static final long PENDING_JOIN_TTL = TimeUnit.MINUTES.toMillis(1);
+
     private final EasyStats plugin;
+    // Looked up off the main thread during pre-login, recorded once the login is allowed and the hostname is known
+    private final Map<UUID, PendingJoin> pendingJoins = new ConcurrentHashMap<>();
 
     public PlayerListener(EasyStats plugin) {
         this.plugin = plugin;
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
         if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
             return;
         }
 
         UUID playerId = event.getUniqueId();
-        InetAddress address = event.getAddress();
-        String hostname = address.getHostName();
-        String clientType = plugin.getDependencyManager().getClientType(playerId.toString());
+        long now = System.currentTimeMillis();
+        expirePendingJoins(now);
+        String clientType = plugin.getClientTypeDetector().detect(playerId);
+        String country = plugin.getGeoIPManager().getCountry(event.getAddress());
+        pendingJoins.put(playerId, new PendingJoin(event.getName(), clientType.equals(ClientTypeDetector.BEDROCK), country, now));
+    }
+
+    // A connection that drops between pre-login and login never reaches onPlayerLogin or onPlayerQuit
+    private void expirePendingJoins(long now) {
+        Iterator<Map.Entry<UUID, PendingJoin>> iterator = pendingJoins.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, PendingJoin> entry = iterator.next();
+            if (now - entry.getValue().time() > PENDING_JOIN_TTL) {
+                iterator.remove();
+                plugin.getClientTypeDetector().forget(entry.getKey());
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        PendingJoin pending = pendingJoins.remove(playerId);
+        if (pending == null || event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            plugin.getClientTypeDetector().forget(playerId);
+            return;
+        }
 
         // Record the join in the database
-        plugin.getDataManager().recordJoin(playerId, hostname, clientType);
+        String hostname = plugin.getHostnameTracker().getHostname(playerId);
+        plugin.getDataManager().recordJoin(new JoinData(playerId, pending.name(), plugin.getPlatformResolver().resolve(hostname),
+                pending.bedrock(), hostname, pending.country(), plugin.getCountryTiers().getTier(pending.country())));
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        String hostname = event.getPlayer().getAddress().getHostName();
-        plugin.getSessionManager().startSession(event.getPlayer().getUniqueId(), hostname);
+        UUID playerId = event.getPlayer().getUniqueId();
+        String hostname = plugin.getHostnameTracker().getHostname(playerId);
+        String platform = plugin.getPlatformResolver().resolve(hostname);
+        plugin.getOnlineCounters().join(playerId, hostname, platform);
+        plugin.getSessionManager().startSession(playerId, platform);
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        String hostname = event.getPlayer().getAddress().getHostName();
-        plugin.getSessionManager().endSession(event.getPlayer().getUniqueId(), hostname);
+        UUID playerId = event.getPlayer().getUniqueId();
+        pendingJoins.remove(playerId);
+        plugin.getSessionManager().endSession(playerId, platformOf(playerId));
+        plugin.getClientTypeDetector().forget(playerId);
+        plugin.getOnlineCounters().quit(playerId);
+        plugin.getCommandQueryExecutor().cancel(playerId);
+    }
+
+    private String platformOf(UUID playerId) {
+        return plugin.getPlatformResolver().resolve(plugin.getHostnameTracker().getHostname(playerId));
+    }
+
+    private record PendingJoin(String name, boolean bedrock, String country, long time) {
     }
-} 
\ No newline at end of file
+}
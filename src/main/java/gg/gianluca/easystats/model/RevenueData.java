@@ -0,0 +1,5 @@
+package gg.gianluca.easystats.model;
+
+// A revenue record as queued for writing, so batch listeners can see what a committed batch added
+public record RevenueData(String platform, double amount, String currency) {
+}
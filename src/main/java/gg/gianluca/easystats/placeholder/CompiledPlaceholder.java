@@ -0,0 +1,10 @@
+package gg.gianluca.easystats.placeholder;
+
+// A placeholder whose parameters have already been parsed; evaluating it only reads the stats and formats them
+@FunctionalInterface
+public interface CompiledPlaceholder {
+    // Stands in for parameters no expansion understands
+    CompiledPlaceholder INVALID = () -> null;
+
+    String evaluate();
+}
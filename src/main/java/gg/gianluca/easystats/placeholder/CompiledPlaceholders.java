@@ -0,0 +1,46 @@
+package gg.gianluca.easystats.placeholder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Placeholder parameters compiled once and memoized in a bounded LRU map, so repeated evaluations skip the
+// splitting, case folding and switching. Compiled placeholders must look up anything that a reload can change,
+// like platform names, when they are evaluated.
+public class CompiledPlaceholders {
+    private final Function<String, CompiledPlaceholder> compiler;
+    private final Map<String, CompiledPlaceholder> compiled;
+
+    public CompiledPlaceholders(Function<String, CompiledPlaceholder> compiler, int maxEntries) {
+        this.compiler = compiler;
+        int capacity = Math.max(1, maxEntries);
+        this.compiled = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledPlaceholder> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    // Null for parameters the compiler doesn't understand
+    public String resolve(String params) {
+        return get(params).evaluate();
+    }
+
+    public CompiledPlaceholder get(String params) {
+        CompiledPlaceholder placeholder = compiled.get(params);
+        if (placeholder == null) {
+            placeholder = compiler.apply(params);
+            if (placeholder == null) {
+                placeholder = CompiledPlaceholder.INVALID;
+            }
+            compiled.put(params, placeholder);
+        }
+        return placeholder;
+    }
+
+    public int size() {
+        return compiled.size();
+    }
+}
@@ -6,77 +6,74 @@ import org.bukkit.plugin.java.JavaPlugin;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class EasyStatsExpansion extends PlaceholderExpansion {
 
     private final EasyStats plugin;
+    private final PlaceholderSnapshotStore snapshots;
 
     public EasyStatsExpansion(EasyStats plugin) {
         this.plugin = plugin;
+        CompiledPlaceholders compiled = new CompiledPlaceholders(this::compile, plugin.getConfig().getInt("placeholders.max-compiled", 1000));
+        this.snapshots = new PlaceholderSnapshotStore(plugin, plugin.getConfig().getConfigurationSection("placeholders"), compiled::resolve);
+        this.snapshots.start();
     }
 
     @Override
     public String onRequest(OfflinePlayer player, String params) {
         if (params == null) return null;
+        return snapshots.get(params);
+    }
 
-        String[] args = params.toLowerCase().split("_");
+    // Compiled once per distinct params string; called by the snapshot store off the main thread
+    private CompiledPlaceholder compile(String params) {
+        String[] args = params.toLowerCase().split("_", 3);
         if (args.length < 2) return null;
 
         switch (args[0]) {
             case "playercount":
                 if (args.length < 3) return null;
-                String platform = args[1];
-                String metric = args[2];
-                Map<String, Object> stats = plugin.getDataManager().getPlayerCountStats(platform);
-                
-                switch (metric) {
-                    case "current":
-                        return String.valueOf(stats.getOrDefault("current", 0));
-                    case "24h":
-                        return String.valueOf(stats.getOrDefault("avg_24h", 0));
-                    case "7d":
-                        return String.valueOf(stats.getOrDefault("avg_7d", 0));
-                    case "14d":
-                        return String.valueOf(stats.getOrDefault("avg_14d", 0));
-                    case "30d":
-                        return String.valueOf(stats.getOrDefault("avg_30d", 0));
-                    case "peak":
-                        return String.valueOf(stats.getOrDefault("peak_count", 0));
-                    case "peak_time":
-                        return String.valueOf(stats.getOrDefault("peak_time", "N/A"));
-                    default:
-                        return null;
-                }
-
+                String name = args[1];
+                return compileMetric(args[2], () -> plugin.getDataManager().getPlayerCountStats(plugin.getPlatformResolver().resolveName(name)));
             case "globalplayercount":
-                if (args.length < 2) return null;
-                metric = args[1];
-                stats = plugin.getDataManager().getPlayerCountStats("global");
-                
-                switch (metric) {
-                    case "current":
-                        return String.valueOf(stats.getOrDefault("current", 0));
-                    case "24h":
-                        return String.valueOf(stats.getOrDefault("avg_24h", 0));
-                    case "7d":
-                        return String.valueOf(stats.getOrDefault("avg_7d", 0));
-                    case "14d":
-                        return String.valueOf(stats.getOrDefault("avg_14d", 0));
-                    case "30d":
-                        return String.valueOf(stats.getOrDefault("avg_30d", 0));
-                    case "peak":
-                        return String.valueOf(stats.getOrDefault("peak_count", 0));
-                    case "peak_time":
-                        return String.valueOf(stats.getOrDefault("peak_time", "N/A"));
-                    default:
-                        return null;
-                }
+                // Metrics may contain underscores, like peak_time
+                String metric = args.length > 2 ? args[1] + "_" + args[2] : args[1];
+                return compileMetric(metric, () -> plugin.getDataManager().getGlobalPlayerCountStats());
+            default:
+                return null;
+        }
+    }
 
+    private static CompiledPlaceholder compileMetric(String metric, Supplier<Map<String, Object>> stats) {
+        switch (metric) {
+            case "current":
+                return () -> String.valueOf(stats.get().getOrDefault("current", 0));
+            case "24h":
+            case "7d":
+            case "14d":
+            case "30d":
+                return () -> String.valueOf(average(stats.get(), metric));
+            case "peak":
+                return () -> String.valueOf(stats.get().getOrDefault("peak_count", 0));
+            case "peak_time":
+                return () -> String.valueOf(stats.get().getOrDefault("peak_time", "N/A"));
             default:
                 return null;
         }
     }
 
+    private static int average(Map<String, Object> stats, String period) {
+        Object averages = stats.get("averages");
+        if (averages instanceof Map) {
+            Object average = ((Map<?, ?>) averages).get(period);
+            if (average instanceof Integer) {
+                return (Integer) average;
+            }
+        }
+        return 0;
+    }
+
     @Override
     public boolean persist() {
         return true;
@@ -0,0 +1,111 @@
+package gg.gianluca.easystats.placeholder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Placeholder values computed off the main thread and published as one immutable map, so a placeholder request is
+// a hash lookup that never reaches the database. Only placeholders requested within the request window are
+// recomputed; one nobody asks for anymore drops out at the next refresh. A placeholder seen for the first time
+// shows the pending value until a refresh, which is started right away, has computed it.
+public class PlaceholderSnapshotStore {
+    // Stands in for placeholders the resolver doesn't know, since the snapshot can't hold nulls
+    private static final String INVALID = new String("invalid");
+
+    private final Plugin plugin;
+    private final Function<String, String> resolver;
+    private final long refreshTicks;
+    private final long requestWindowMillis;
+    private final String pendingValue;
+
+    private volatile Map<String, String> snapshot = Map.of();
+    // Placeholder -> when it was last requested
+    private final Map<String, Long> requested = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    public PlaceholderSnapshotStore(Plugin plugin, ConfigurationSection config, Function<String, String> resolver) {
+        this.plugin = plugin;
+        this.resolver = resolver;
+        this.refreshTicks = Math.max(1L, config != null ? config.getLong("refresh-interval-seconds", 5L) : 5L) * 20L;
+        this.requestWindowMillis = TimeUnit.SECONDS.toMillis(config != null ? config.getLong("request-window-seconds", 300L) : 300L);
+        this.pendingValue = config != null ? config.getString("pending-value", "...") : "...";
+    }
+
+    public void start() {
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::refresh, refreshTicks, refreshTicks);
+    }
+
+    // Safe from any thread; null for placeholders the resolver doesn't know
+    public String get(String placeholder) {
+        long now = System.currentTimeMillis();
+        // Only write when the timestamp is noticeably stale, so hot placeholders don't contend on the map
+        Long lastRequested = requested.get(placeholder);
+        if (lastRequested == null || now - lastRequested > 1000L) {
+            requested.put(placeholder, now);
+        }
+
+        String value = snapshot.get(placeholder);
+        if (value == null) {
+            if (lastRequested == null) {
+                queueRefresh();
+            }
+            return pendingValue;
+        }
+        return value == INVALID ? null : value;
+    }
+
+    private void queueRefresh() {
+        if (plugin.isEnabled() && refreshQueued.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                refreshQueued.set(false);
+                refresh();
+            });
+        }
+    }
+
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long cutoff = System.currentTimeMillis() - requestWindowMillis;
+            Map<String, String> previous = snapshot;
+            Map<String, String> next = new HashMap<>();
+            Iterator<Map.Entry<String, Long>> iterator = requested.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (entry.getValue() < cutoff) {
+                    iterator.remove();
+                    continue;
+                }
+                String placeholder = entry.getKey();
+                try {
+                    String value = resolver.apply(placeholder);
+                    next.put(placeholder, value != null ? value : INVALID);
+                } catch (RuntimeException e) {
+                    plugin.getLogger().warning("Failed to refresh placeholder " + placeholder + ": " + e.getMessage());
+                    String old = previous.get(placeholder);
+                    if (old != null) {
+                        next.put(placeholder, old);
+                    }
+                }
+            }
+            snapshot = Map.copyOf(next);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+}
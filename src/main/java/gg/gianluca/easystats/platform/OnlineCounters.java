@@ -0,0 +1,68 @@
+package gg.gianluca.easystats.platform;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Players online per hostname and per platform, kept up to date by join and quit instead of rescanning every
+// online player when the counts are sampled. Each player remembers what they were counted under, so a quit
+// always undoes exactly what the join added.
+public class OnlineCounters {
+    private final Map<UUID, Connection> connections = new ConcurrentHashMap<>();
+    private final Map<String, Integer> hostnames = new ConcurrentHashMap<>();
+    private final Map<String, Integer> platforms = new ConcurrentHashMap<>();
+
+    public void join(UUID playerId, String hostname, String platform) {
+        Connection previous = connections.put(playerId, new Connection(hostname, platform));
+        if (previous != null) {
+            decrement(previous);
+        }
+        hostnames.merge(hostname, 1, Integer::sum);
+        platforms.merge(platform, 1, Integer::sum);
+    }
+
+    public void quit(UUID playerId) {
+        Connection connection = connections.remove(playerId);
+        if (connection != null) {
+            decrement(connection);
+        }
+    }
+
+    private void decrement(Connection connection) {
+        // Entries go away at zero so hostnames nobody uses anymore don't pile up
+        hostnames.computeIfPresent(connection.hostname(), (key, count) -> count > 1 ? count - 1 : null);
+        platforms.computeIfPresent(connection.platform(), (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // Moves online players to the platforms their hostnames map to now, after platforms.yml was reloaded
+    public void remap(Function<String, String> platformOf) {
+        for (Map.Entry<UUID, Connection> entry : connections.entrySet()) {
+            Connection connection = entry.getValue();
+            String platform = platformOf.apply(connection.hostname());
+            if (!platform.equals(connection.platform())) {
+                join(entry.getKey(), connection.hostname(), platform);
+            }
+        }
+    }
+
+    public int getHostnameCount(String hostname) {
+        return hostnames.getOrDefault(hostname, 0);
+    }
+
+    public int getPlatformCount(String platform) {
+        return platforms.getOrDefault(platform, 0);
+    }
+
+    public Map<String, Integer> getHostnameCounts() {
+        return new HashMap<>(hostnames);
+    }
+
+    public Map<String, Integer> getPlatformCounts() {
+        return new HashMap<>(platforms);
+    }
+
+    private record Connection(String hostname, String platform) {
+    }
+}
@@ -0,0 +1,204 @@
+package gg.gianluca.easystats.platform;
+
+import gg.gianluca.easystats.hostname.HostnameTracker;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+// Maps hostnames to the platforms defined in platforms.yml. Exact patterns are a single hash lookup; wildcard
+// patterns are compiled into a trie keyed by hostname labels from right to left, so a lookup walks at most
+// one node per label no matter how many patterns there are. Results are memoized in a bounded LRU map.
+//
+// Pattern syntax, matched case-insensitively:
+//   play.example.com    exactly that hostname
+//   *.example.com       one or more labels in front of example.com
+//   eu.*.example.com    exactly one label in that position
+//   tiktok*.example.com glob within a single label
+public class PlatformResolver {
+    public static final String UNKNOWN = "unknown";
+    private static final int CACHE_SIZE = 10_000;
+
+    private final Logger logger;
+    private volatile Compiled compiled = new Compiled(Map.of(), new Node(), Set.of(), newCache());
+
+    public PlatformResolver(Logger logger) {
+        this.logger = logger;
+    }
+
+    // Compiles the platforms section; the old patterns keep serving lookups until the new ones are ready
+    public void load(ConfigurationSection platforms) {
+        Map<String, String> exact = new HashMap<>();
+        Node root = new Node();
+        Set<String> names = new LinkedHashSet<>();
+        int patterns = 0;
+
+        if (platforms != null) {
+            for (String platform : platforms.getKeys(false)) {
+                names.add(platform);
+                for (String pattern : platforms.getStringList(platform)) {
+                    String normalized = pattern.trim().toLowerCase();
+                    if (normalized.isEmpty()) {
+                        continue;
+                    }
+                    patterns++;
+                    if (!normalized.contains("*")) {
+                        String previous = exact.putIfAbsent(HostnameTracker.normalize(normalized), platform);
+                        if (previous != null && !previous.equals(platform)) {
+                            logger.warning("Hostname " + normalized + " is listed under both " + previous + " and " + platform + ", using " + previous);
+                        }
+                    } else {
+                        insert(root, normalized, platform);
+                    }
+                }
+            }
+        }
+
+        // Each load gets its own memo, so a lookup still finishing against the old patterns can't leave its result behind
+        compiled = new Compiled(exact, root, Collections.unmodifiableSet(names), newCache());
+        logger.info("Loaded " + names.size() + " platforms with " + patterns + " hostname patterns");
+    }
+
+    public String resolve(String hostname) {
+        String normalized = HostnameTracker.normalize(hostname);
+        Compiled current = compiled;
+        String platform = current.cache().get(normalized);
+        if (platform == null) {
+            platform = lookup(current, normalized);
+            current.cache().put(normalized, platform);
+        }
+        return platform;
+    }
+
+    // Placeholders and commands accept either a platform name or a hostname
+    public String resolveName(String nameOrHostname) {
+        if (compiled.names().contains(nameOrHostname)) {
+            return nameOrHostname;
+        }
+        return nameOrHostname.contains(".") ? resolve(nameOrHostname) : nameOrHostname;
+    }
+
+    public Set<String> getPlatforms() {
+        return compiled.names();
+    }
+
+    private static String lookup(Compiled compiled, String hostname) {
+        String platform = compiled.exact().get(hostname);
+        if (platform != null) {
+            return platform;
+        }
+        String[] labels = hostname.split("\\.");
+        platform = match(compiled.root(), labels, labels.length - 1);
+        return platform != null ? platform : UNKNOWN;
+    }
+
+    // index walks the labels from the top-level domain down; more specific branches are tried first
+    private static String match(Node node, String[] labels, int index) {
+        if (index < 0) {
+            return node.platform;
+        }
+        String label = labels[index];
+
+        Node child = node.children.get(label);
+        if (child != null) {
+            String platform = match(child, labels, index - 1);
+            if (platform != null) {
+                return platform;
+            }
+        }
+        for (LabelGlob glob : node.globs) {
+            if (glob.pattern().matcher(label).matches()) {
+                String platform = match(glob.node(), labels, index - 1);
+                if (platform != null) {
+                    return platform;
+                }
+            }
+        }
+        if (node.anyLabel != null) {
+            String platform = match(node.anyLabel, labels, index - 1);
+            if (platform != null) {
+                return platform;
+            }
+        }
+        // A leading * covers all remaining labels
+        return node.anyPrefix;
+    }
+
+    private void insert(Node root, String pattern, String platform) {
+        String[] labels = pattern.split("\\.");
+        Node node = root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            String label = labels[i];
+            if (label.equals("*") && i == 0) {
+                if (node.anyPrefix == null) {
+                    node.anyPrefix = platform;
+                }
+                return;
+            }
+            if (label.equals("*")) {
+                if (node.anyLabel == null) {
+                    node.anyLabel = new Node();
+                }
+                node = node.anyLabel;
+            } else if (label.contains("*")) {
+                node = node.glob(label);
+            } else {
+                node = node.children.computeIfAbsent(label, k -> new Node());
+            }
+        }
+        if (node.platform == null) {
+            node.platform = platform;
+        } else if (!node.platform.equals(platform)) {
+            logger.warning("Pattern " + pattern + " is listed under both " + node.platform + " and " + platform + ", using " + node.platform);
+        }
+    }
+
+    private static Map<String, String> newCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+
+    private record Compiled(Map<String, String> exact, Node root, Set<String> names, Map<String, String> cache) {
+    }
+
+    private record LabelGlob(String label, Pattern pattern, Node node) {
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<LabelGlob> globs = new ArrayList<>(0);
+        private Node anyLabel;
+        private String anyPrefix;
+        private String platform;
+
+        private Node glob(String label) {
+            for (LabelGlob glob : globs) {
+                if (glob.label().equals(label)) {
+                    return glob.node();
+                }
+            }
+            StringBuilder regex = new StringBuilder();
+            for (String part : label.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append("[^.]*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            Node node = new Node();
+            globs.add(new LabelGlob(label, Pattern.compile(regex.toString()), node));
+            return node;
+        }
+    }
+}
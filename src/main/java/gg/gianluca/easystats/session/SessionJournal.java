@@ -0,0 +1,362 @@
+package gg.gianluca.easystats.session;
+
+import gg.gianluca.easystats.data.WriteBehindQueue;
+import gg.gianluca.easystats.data.WriteEvent;
+import gg.gianluca.easystats.database.DatabaseFactory;
+import gg.gianluca.easystats.database.Dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// Durable side of session tracking. Starts and ends are appended to session_journal through the write-behind
+// queue, so they are batched with every other write and never block a join or quit. Compaction moves finished
+// sessions into the sessions table and folds them into one summary row per platform, which is all startup has to
+// read to rebuild the aggregates. A heartbeat records how long the server was known to be up, so sessions left
+// open by a crash are closed at the last heartbeat rather than at the next start. Records the queue has no room for
+// are kept in memory and retried, so a full queue never loses an end and makes a session look like a crash.
+public class SessionJournal {
+    private static final String HEARTBEAT = "heartbeat";
+    private static final String SUMMARY_KEY = "platform";
+    private static final String[] HISTOGRAM_KEY = {"platform", "bucket"};
+
+    private final Logger logger;
+    private final DatabaseFactory databaseFactory;
+    private final WriteBehindQueue writeQueue;
+    private final int chunkSize;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // Records the write queue turned away, oldest first. Later records wait behind them, so an end is never
+    // stored ahead of its start; they move into the queue as soon as it has room.
+    private final Deque<WriteEvent> backlog = new ArrayDeque<>();
+
+    public SessionJournal(Logger logger, DatabaseFactory databaseFactory, WriteBehindQueue writeQueue, int chunkSize) {
+        this.logger = logger;
+        this.databaseFactory = databaseFactory;
+        this.writeQueue = writeQueue;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public void recordStart(UUID playerId, String platform, long startTime) {
+        journal(new WriteEvent("INSERT INTO session_journal (uuid, platform, start_time) VALUES (?, ?, ?)", statement -> {
+            statement.setString(1, playerId.toString());
+            statement.setString(2, platform);
+            statement.setLong(3, startTime);
+        }));
+    }
+
+    public void recordEnd(UUID playerId, String platform, long startTime, long endTime) {
+        journal(new WriteEvent("INSERT INTO session_journal (uuid, platform, start_time, end_time) VALUES (?, ?, ?, ?)", statement -> {
+            statement.setString(1, playerId.toString());
+            statement.setString(2, platform);
+            statement.setLong(3, startTime);
+            statement.setLong(4, endTime);
+        }));
+    }
+
+    // Queued like the journal records, so a heartbeat is only stored once everything before it is.
+    // Also moves held back records into the queue when nothing else has in the meantime.
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        journal(new WriteEvent("UPDATE session_state SET value = ? WHERE name = ?", statement -> {
+            statement.setLong(1, now);
+            statement.setString(2, HEARTBEAT);
+        }));
+    }
+
+    private void journal(WriteEvent event) {
+        synchronized (backlog) {
+            drainBacklog();
+            if (backlog.isEmpty() && writeQueue.offer(event)) {
+                return;
+            }
+            if (backlog.isEmpty()) {
+                logger.warning("Write queue is full, keeping session journal records in memory until it has room");
+            }
+            backlog.addLast(event);
+        }
+    }
+
+    // Caller holds the backlog lock
+    private void drainBacklog() {
+        while (!backlog.isEmpty() && writeQueue.offer(backlog.peekFirst())) {
+            backlog.pollFirst();
+        }
+    }
+
+    // Used on shutdown once the write queue has stopped: whatever is still held back is written directly
+    public void writeBacklog() {
+        synchronized (backlog) {
+            if (backlog.isEmpty()) {
+                return;
+            }
+            try (Connection connection = databaseFactory.getWriteConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    for (WriteEvent event : backlog) {
+                        for (int i = 0; i < event.size(); i++) {
+                            try (PreparedStatement statement = connection.prepareStatement(event.getSql(i))) {
+                                event.bind(i, statement);
+                                statement.executeUpdate();
+                            }
+                        }
+                    }
+                    connection.commit();
+                    backlog.clear();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                logger.severe("Failed to save " + backlog.size() + " session journal records: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getBacklogSize() {
+        synchronized (backlog) {
+            return backlog.size();
+        }
+    }
+
+    // Closes sessions a crash left open at the last heartbeat; must run before new sessions are journaled
+    public int recover() {
+        try (Connection connection = databaseFactory.getWriteConnection()) {
+            long heartbeat = 0L;
+            try (PreparedStatement statement = connection.prepareStatement("SELECT value FROM session_state WHERE name = ?")) {
+                statement.setString(1, HEARTBEAT);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        heartbeat = rs.getLong("value");
+                    }
+                }
+            }
+
+            int recovered = 0;
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT s.uuid, s.platform, s.start_time FROM session_journal s WHERE s.end_time IS NULL AND NOT EXISTS (" +
+                            "SELECT 1 FROM session_journal e WHERE e.uuid = s.uuid AND e.start_time = s.start_time AND e.end_time IS NOT NULL)");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO session_journal (uuid, platform, start_time, end_time) VALUES (?, ?, ?, ?)");
+                 ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    long startTime = rs.getLong("start_time");
+                    insert.setString(1, rs.getString("uuid"));
+                    insert.setString(2, rs.getString("platform"));
+                    insert.setLong(3, startTime);
+                    // Without a heartbeat after the start there is nothing to go on, so the session counts as empty
+                    insert.setLong(4, Math.max(heartbeat, startTime));
+                    insert.addBatch();
+                    recovered++;
+                }
+                if (recovered > 0) {
+                    insert.executeBatch();
+                }
+            }
+            if (recovered > 0) {
+                logger.info("Closed " + recovered + " sessions left open by an unclean shutdown");
+            }
+            return recovered;
+        } catch (SQLException e) {
+            logger.severe("Failed to recover open sessions: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Moves finished sessions out of the journal, one transaction per chunk
+    public long compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return 0L;
+        }
+        long total = 0L;
+        try (Connection connection = databaseFactory.getWriteConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                int compacted;
+                do {
+                    compacted = compactChunk(connection);
+                    connection.commit();
+                    total += compacted;
+                } while (compacted == chunkSize);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            logger.severe("Failed to compact session journal: " + e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+        return total;
+    }
+
+    private int compactChunk(Connection connection) throws SQLException {
+        List<Session> sessions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT uuid, platform, start_time, end_time FROM session_journal WHERE end_time IS NOT NULL ORDER BY id LIMIT ?")) {
+            statement.setInt(1, chunkSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    sessions.add(new Session(rs.getString("uuid"), rs.getString("platform"), rs.getLong("start_time"), rs.getLong("end_time")));
+                }
+            }
+        }
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Summary> summaries = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO sessions (uuid, platform, start_time, end_time, duration) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM session_journal WHERE uuid = ? AND start_time = ?")) {
+            for (Session session : sessions) {
+                long duration = Math.max(0L, session.endTime() - session.startTime());
+                insert.setString(1, session.uuid());
+                insert.setString(2, session.platform());
+                insert.setLong(3, session.startTime());
+                insert.setLong(4, session.endTime());
+                insert.setLong(5, duration);
+                insert.addBatch();
+
+                delete.setString(1, session.uuid());
+                delete.setLong(2, session.startTime());
+                delete.addBatch();
+
+                summaries.computeIfAbsent(session.platform(), k -> new Summary()).add(duration);
+            }
+            insert.executeBatch();
+            delete.executeBatch();
+        }
+
+        Dialect dialect = databaseFactory.getDialect();
+        String[] keys = {SUMMARY_KEY};
+        try (PreparedStatement sessionsUpsert = connection.prepareStatement(dialect.upsertIncrement("session_summaries", keys, "sessions"));
+             PreparedStatement durationUpsert = connection.prepareStatement(dialect.upsertIncrement("session_summaries", keys, "total_duration"));
+             PreparedStatement maxUpsert = connection.prepareStatement(dialect.upsertMax("session_summaries", keys, "max_duration"));
+             PreparedStatement histogramUpsert = connection.prepareStatement(dialect.upsertIncrement("session_histograms", HISTOGRAM_KEY, "sessions"))) {
+            for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+                Summary summary = entry.getValue();
+                // The summary columns default to 0, so whichever upsert creates the row leaves the others valid
+                bindSummary(sessionsUpsert, entry.getKey(), summary.getSessions());
+                bindSummary(durationUpsert, entry.getKey(), summary.getTotalDuration());
+                bindSummary(maxUpsert, entry.getKey(), summary.getMaxDuration());
+
+                long[] histogram = summary.getHistogram();
+                for (int bucket = 0; bucket < histogram.length; bucket++) {
+                    if (histogram[bucket] > 0) {
+                        histogramUpsert.setString(1, entry.getKey());
+                        histogramUpsert.setInt(2, bucket);
+                        histogramUpsert.setLong(3, histogram[bucket]);
+                        histogramUpsert.addBatch();
+                    }
+                }
+            }
+            histogramUpsert.executeBatch();
+        }
+        return sessions.size();
+    }
+
+    private static void bindSummary(PreparedStatement statement, String platform, long value) throws SQLException {
+        statement.setString(1, platform);
+        statement.setLong(2, value);
+        statement.executeUpdate();
+    }
+
+    public Map<String, Summary> loadSummaries() {
+        Map<String, Summary> summaries = new HashMap<>();
+        try (Connection connection = databaseFactory.getReadConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT platform, sessions, total_duration, max_duration FROM session_summaries");
+                 ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Summary summary = summaries.computeIfAbsent(rs.getString("platform"), k -> new Summary());
+                    summary.sessions = rs.getLong("sessions");
+                    summary.totalDuration = rs.getLong("total_duration");
+                    summary.maxDuration = rs.getLong("max_duration");
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT platform, bucket, sessions FROM session_histograms");
+                 ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = rs.getInt("bucket");
+                    if (bucket >= 0 && bucket < SessionHistogram.BUCKETS) {
+                        summaries.computeIfAbsent(rs.getString("platform"), k -> new Summary()).histogram[bucket] += rs.getLong("sessions");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Failed to load session summaries: " + e.getMessage());
+        }
+        return summaries;
+    }
+
+    // Streams compacted sessions that ended at or after since, oldest first, to rebuild the recent windows
+    public void forEachSessionSince(long since, SessionConsumer consumer) {
+        try (Connection connection = databaseFactory.getReadConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT platform, end_time, duration FROM sessions WHERE end_time >= ? ORDER BY end_time")) {
+            statement.setLong(1, since);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString("platform"), rs.getLong("end_time"), rs.getLong("duration"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("Failed to load recent sessions: " + e.getMessage());
+        }
+    }
+
+    public interface SessionConsumer {
+        void accept(String platform, long endTime, long duration);
+    }
+
+    // All-time totals of one platform, as compacted into the database
+    public static class Summary {
+        private long sessions;
+        private long totalDuration;
+        private long maxDuration;
+        private final long[] histogram = new long[SessionHistogram.BUCKETS];
+
+        private void add(long duration) {
+            sessions++;
+            totalDuration += duration;
+            maxDuration = Math.max(maxDuration, duration);
+            histogram[SessionHistogram.bucketOf(duration)]++;
+        }
+
+        public long getSessions() {
+            return sessions;
+        }
+
+        public long getTotalDuration() {
+            return totalDuration;
+        }
+
+        public long getMaxDuration() {
+            return maxDuration;
+        }
+
+        public long[] getHistogram() {
+            return histogram;
+        }
+    }
+
+    private record Session(String uuid, String platform, long startTime, long endTime) {
+    }
+}
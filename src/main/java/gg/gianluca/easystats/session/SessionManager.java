@@ -1,31 +1,68 @@
 package gg.gianluca.easystats.session;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SessionManager {
+    private static final SessionWindows EMPTY_WINDOWS = new SessionWindows();
+
     private final Map<UUID, Long> sessionStartTimes;
     private final Map<String, SessionStats> hostnameStats;
+    private final Map<String, SessionWindows> hostnameWindows;
+    private final SessionJournal journal;
 
+    // Memory only, for the benchmarks
     public SessionManager() {
+        this(null);
+    }
+
+    public SessionManager(SessionJournal journal) {
         this.sessionStartTimes = new ConcurrentHashMap<>();
         this.hostnameStats = new ConcurrentHashMap<>();
+        this.hostnameWindows = new ConcurrentHashMap<>();
+        this.journal = journal;
+        if (journal != null) {
+            // Close what a crash left open, then start from the compacted summaries instead of every session
+            journal.recover();
+            journal.compact();
+            journal.loadSummaries().forEach((hostname, summary) ->
+                    hostnameStats.computeIfAbsent(hostname, k -> new SessionStats()).addSummary(summary));
+            long since = System.currentTimeMillis() - SessionWindow.WEEK.getMillis();
+            journal.forEachSessionSince(since, (hostname, endTime, duration) ->
+                    hostnameWindows.computeIfAbsent(hostname, k -> new SessionWindows()).record(endTime, duration));
+        }
     }
 
     public void startSession(UUID playerId, String hostname) {
-        sessionStartTimes.put(playerId, System.currentTimeMillis());
+        long startTime = System.currentTimeMillis();
+        sessionStartTimes.put(playerId, startTime);
+        if (journal != null) {
+            journal.recordStart(playerId, hostname, startTime);
+        }
     }
 
     public void endSession(UUID playerId, String hostname) {
         Long startTime = sessionStartTimes.remove(playerId);
         if (startTime != null) {
-            long duration = System.currentTimeMillis() - startTime;
+            long endTime = System.currentTimeMillis();
             hostnameStats.computeIfAbsent(hostname, k -> new SessionStats())
-                    .addSession(duration);
+                    .addSession(endTime - startTime);
+            hostnameWindows.computeIfAbsent(hostname, k -> new SessionWindows())
+                    .record(endTime, endTime - startTime);
+            if (journal != null) {
+                journal.recordEnd(playerId, hostname, startTime, endTime);
+            }
         }
     }
 
+    public SessionJournal getJournal() {
+        return journal;
+    }
+
     public double getAverageSessionTime(String hostname) {
         SessionStats stats = hostnameStats.get(hostname);
         return stats != null ? stats.getAverageSessionTime() : 0.0;
@@ -45,17 +82,60 @@ public class SessionManager {
         );
     }
 
+    // p50, p90, p99 and max session length in milliseconds, all 0 when nothing was recorded
+    public Map<String, Long> getSessionPercentiles(String hostname) {
+        SessionStats stats = hostnameStats.get(hostname);
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", stats != null ? stats.getPercentile(50) : 0L);
+        percentiles.put("p90", stats != null ? stats.getPercentile(90) : 0L);
+        percentiles.put("p99", stats != null ? stats.getPercentile(99) : 0L);
+        percentiles.put("max", stats != null ? stats.getMaxDuration() : 0L);
+        return percentiles;
+    }
+
+    // Sessions that ended within the window; see SessionWindows for the keys
+    public Map<String, Long> getSessionWindowStats(String hostname, SessionWindow window) {
+        SessionWindows windows = hostnameWindows.get(hostname);
+        return (windows != null ? windows : EMPTY_WINDOWS).query(window, System.currentTimeMillis());
+    }
+
+    // Quits on any thread update these without locking; memory per hostname is fixed by the histogram size
     private static class SessionStats {
-        private long totalSessions;
-        private long totalDuration;
+        private final LongAdder totalSessions = new LongAdder();
+        private final LongAdder totalDuration = new LongAdder();
+        private final LongAccumulator maxDuration = new LongAccumulator(Long::max, 0L);
+        private final SessionHistogram histogram = new SessionHistogram();
 
         public void addSession(long duration) {
-            totalSessions++;
-            totalDuration += duration;
+            totalSessions.increment();
+            totalDuration.add(duration);
+            maxDuration.accumulate(duration);
+            histogram.record(duration);
+        }
+
+        public void addSummary(SessionJournal.Summary summary) {
+            totalSessions.add(summary.getSessions());
+            totalDuration.add(summary.getTotalDuration());
+            maxDuration.accumulate(summary.getMaxDuration());
+            long[] counts = summary.getHistogram();
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] > 0) {
+                    histogram.add(bucket, counts[bucket]);
+                }
+            }
         }
 
         public double getAverageSessionTime() {
-            return totalSessions > 0 ? (double) totalDuration / totalSessions : 0.0;
+            long sessions = totalSessions.sum();
+            return sessions > 0 ? (double) totalDuration.sum() / sessions : 0.0;
+        }
+
+        public long getMaxDuration() {
+            return maxDuration.get();
+        }
+
+        public long getPercentile(double percentile) {
+            return histogram.getPercentile(percentile, maxDuration.get());
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package gg.gianluca.easystats.session;
+
+import java.util.concurrent.TimeUnit;
+
+public enum SessionWindow {
+    HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+    DAY("24h", TimeUnit.DAYS.toMillis(1)),
+    WEEK("7d", TimeUnit.DAYS.toMillis(7));
+
+    private final String name;
+    private final long millis;
+
+    SessionWindow(String name, long millis) {
+        this.name = name;
+        this.millis = millis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    // null for anything that isn't 1h, 24h or 7d
+    public static SessionWindow fromString(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (SessionWindow window : values()) {
+            if (window.name.equalsIgnoreCase(name)) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+package gg.gianluca.easystats.session;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Recent session lengths of one platform, kept in ring buffers of fixed slots indexed by the minute or hour the
+// session ended in. A slot still holding an older period is cleared in place when its index comes round again, so
+// memory never grows and a window query only sums the slots inside it. The last hour is answered from minute
+// slots; 24h and 7d from hour slots, as a week of minute histograms would cost megabytes per platform.
+public class SessionWindows {
+    private static final int MINUTE_SLOTS = 60;
+    private static final int HOUR_SLOTS = 7 * 24;
+
+    private final Ring minutes = new Ring(MINUTE_SLOTS, TimeUnit.MINUTES.toMillis(1));
+    private final Ring hours = new Ring(HOUR_SLOTS, TimeUnit.HOURS.toMillis(1));
+
+    public synchronized void record(long endTime, long duration) {
+        minutes.record(endTime, duration);
+        hours.record(endTime, duration);
+    }
+
+    // sessions, average, p50, p90, p99 and max, durations in milliseconds
+    public synchronized Map<String, Long> query(SessionWindow window, long now) {
+        Ring ring = window == SessionWindow.HOUR ? minutes : hours;
+        return ring.query(now, (int) (window.getMillis() / ring.slotMillis));
+    }
+
+    private static final class Ring {
+        private final long slotMillis;
+        // The period (endTime / slotMillis) each slot currently holds, -1 while unused
+        private final long[] periods;
+        private final long[] counts;
+        private final long[] durations;
+        private final long[] maxima;
+        // One row of SessionHistogram.BUCKETS per slot; a slot never sees more than an int of sessions
+        private final int[] histograms;
+
+        private Ring(int slots, long slotMillis) {
+            this.slotMillis = slotMillis;
+            this.periods = new long[slots];
+            this.counts = new long[slots];
+            this.durations = new long[slots];
+            this.maxima = new long[slots];
+            this.histograms = new int[slots * SessionHistogram.BUCKETS];
+            Arrays.fill(periods, -1L);
+        }
+
+        private void record(long endTime, long duration) {
+            long period = endTime / slotMillis;
+            int slot = (int) (period % periods.length);
+            if (periods[slot] != period) {
+                if (periods[slot] > period) {
+                    // Older than anything the ring still covers
+                    return;
+                }
+                periods[slot] = period;
+                counts[slot] = 0L;
+                durations[slot] = 0L;
+                maxima[slot] = 0L;
+                int row = slot * SessionHistogram.BUCKETS;
+                Arrays.fill(histograms, row, row + SessionHistogram.BUCKETS, 0);
+            }
+            counts[slot]++;
+            durations[slot] += duration;
+            maxima[slot] = Math.max(maxima[slot], duration);
+            histograms[slot * SessionHistogram.BUCKETS + SessionHistogram.bucketOf(duration)]++;
+        }
+
+        private Map<String, Long> query(long now, int slotCount) {
+            long current = now / slotMillis;
+            long sessions = 0L;
+            long total = 0L;
+            long max = 0L;
+            long[] histogram = new long[SessionHistogram.BUCKETS];
+            for (int slot = 0; slot < periods.length; slot++) {
+                long period = periods[slot];
+                if (period < 0 || period > current || period <= current - slotCount) {
+                    continue;
+                }
+                sessions += counts[slot];
+                total += durations[slot];
+                max = Math.max(max, maxima[slot]);
+                int row = slot * SessionHistogram.BUCKETS;
+                for (int bucket = 0; bucket < SessionHistogram.BUCKETS; bucket++) {
+                    histogram[bucket] += histograms[row + bucket];
+                }
+            }
+
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("sessions", sessions);
+            stats.put("average", sessions > 0 ? total / sessions : 0L);
+            stats.put("p50", SessionHistogram.getPercentile(histogram, 50, max));
+            stats.put("p90", SessionHistogram.getPercentile(histogram, 90, max));
+            stats.put("p99", SessionHistogram.getPercentile(histogram, 99, max));
+            stats.put("max", max);
+            return stats;
+        }
+    }
+}
@@ -41,23 +41,4 @@ public class DependencyManager {
     public boolean isPlaceholderAPIEnabled() {
         return placeholderAPIEnabled;
     }
-
-    public String getClientType(String uuid) {
-        if (!floodgateEnabled) {
-            return "java"; // Default to Java if Floodgate is not available
-        }
-
-        try {
-            // Use reflection to avoid direct dependency on Floodgate API
-            Class<?> floodgateApiClass = Class.forName("org.geysermc.floodgate.api.FloodgateApi");
-            Object floodgateApi = floodgateApiClass.getMethod("getInstance").invoke(null);
-            boolean isFloodgatePlayer = (boolean) floodgateApiClass.getMethod("isFloodgatePlayer", String.class)
-                    .invoke(floodgateApi, uuid);
-
-            return isFloodgatePlayer ? "bedrock" : "java";
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to check player platform type: " + e.getMessage());
-            return "java"; // Default to Java on error
-        }
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
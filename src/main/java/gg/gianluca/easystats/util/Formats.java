@@ -0,0 +1,56 @@
+package gg.gianluca.easystats.util;
+
+import java.text.DecimalFormat;
+import java.text.FieldPosition;
+
+// Number, percentage and duration formatting shared by the API, commands and placeholders. DecimalFormat isn't
+// thread-safe, so every thread gets its own formats and buffers; the only allocation per call is the result.
+public final class Formats {
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private Formats() {
+    }
+
+    public static String formatNumber(double number) {
+        Buffers buffers = BUFFERS.get();
+        return buffers.format(buffers.number, number);
+    }
+
+    // Takes a percentage (50.0 for 50%), not a fraction
+    public static String formatPercentage(double percentage) {
+        Buffers buffers = BUFFERS.get();
+        return buffers.format(buffers.percentage, percentage / 100.0);
+    }
+
+    // 1h 2m 3s, 2m 3s or 3s
+    public static String formatDuration(long milliseconds) {
+        long seconds = milliseconds / 1000;
+        long minutes = seconds / 60;
+        long hours = minutes / 60;
+        minutes %= 60;
+        seconds %= 60;
+
+        StringBuilder builder = BUFFERS.get().builder;
+        builder.setLength(0);
+        if (hours > 0) {
+            builder.append(hours).append("h ");
+        }
+        if (hours > 0 || minutes > 0) {
+            builder.append(minutes).append("m ");
+        }
+        return builder.append(seconds).append('s').toString();
+    }
+
+    private static class Buffers {
+        private final DecimalFormat number = new DecimalFormat("#,##0.00");
+        private final DecimalFormat percentage = new DecimalFormat("#,##0.00%");
+        private final StringBuffer buffer = new StringBuffer(32);
+        private final FieldPosition position = new FieldPosition(0);
+        private final StringBuilder builder = new StringBuilder(32);
+
+        private String format(DecimalFormat format, double value) {
+            buffer.setLength(0);
+            return format.format(value, buffer, position).toString();
+        }
+    }
+}
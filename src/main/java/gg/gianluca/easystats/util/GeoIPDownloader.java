@@ -0,0 +1,168 @@
+package gg.gianluca.easystats.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+// Downloads the GeoLite2 archive and streams the .mmdb straight out of HTTP -> gzip -> tar into a target file,
+// hashing the compressed bytes on the way. The ETag and Last-Modified of the installed copy are kept next to it
+// so later refreshes only transfer the archive when MaxMind has published a new one.
+final class GeoIPDownloader {
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    private final String downloadUrl;
+    private final String checksumUrl;
+    private final Path metadataPath;
+
+    GeoIPDownloader(String downloadUrl, String checksumUrl, Path metadataPath) {
+        this.downloadUrl = downloadUrl;
+        this.checksumUrl = checksumUrl;
+        this.metadataPath = metadataPath;
+    }
+
+    // Returns null when the server reports the installed copy is current, otherwise the validators of the new one
+    Validators download(String entryName, Path target, boolean conditional) throws IOException {
+        Validators installed = conditional ? loadValidators() : Validators.NONE;
+        HttpURLConnection conn = open(downloadUrl);
+        if (installed.etag() != null) {
+            conn.setRequestProperty("If-None-Match", installed.etag());
+        }
+        if (installed.lastModified() != null) {
+            conn.setRequestProperty("If-Modified-Since", installed.lastModified());
+        }
+
+        try {
+            int status = conn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Download failed with response code " + status);
+            }
+
+            // Fetched after the conditional check so an unchanged database costs a single request
+            String expectedChecksum = checksumUrl.isEmpty() ? null : fetchChecksum();
+            MessageDigest digest = sha256();
+            try (DigestInputStream hashed = new DigestInputStream(new BufferedInputStream(conn.getInputStream()), digest);
+                 TarInputStream tar = new TarInputStream(new GZIPInputStream(hashed))) {
+                if (!extract(tar, entryName, target)) {
+                    throw new IOException("Archive does not contain " + entryName);
+                }
+                // The checksum covers the whole archive, so read what follows the entry too
+                byte[] buffer = new byte[8192];
+                while (hashed.read(buffer) != -1) {
+                    // draining
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+
+            String actualChecksum = HexFormat.of().formatHex(digest.digest());
+            if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(actualChecksum)) {
+                Files.deleteIfExists(target);
+                throw new IOException("Checksum mismatch, expected " + expectedChecksum + " but got " + actualChecksum);
+            }
+            return new Validators(conn.getHeaderField("ETag"), conn.getHeaderField("Last-Modified"));
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static boolean extract(TarInputStream tar, String entryName, Path target) throws IOException {
+        TarEntry entry;
+        while ((entry = tar.getNextEntry()) != null) {
+            if (entry.getName().endsWith(entryName)) {
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    tar.transferTo(out);
+                }
+                // Skip the rest of the archive's entries so the digest stream reaches its end
+                while (tar.getNextEntry() != null) {
+                    // skipping
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // MaxMind serves "<sha256>  <archive name>"
+    private String fetchChecksum() throws IOException {
+        HttpURLConnection conn = open(checksumUrl);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Checksum download failed with response code " + conn.getResponseCode());
+            }
+            try (InputStream in = conn.getInputStream()) {
+                String body = new String(in.readNBytes(1024), StandardCharsets.US_ASCII).trim();
+                String checksum = body.split("\\s+")[0];
+                if (checksum.length() != 64) {
+                    throw new IOException("Unexpected checksum response: " + body);
+                }
+                return checksum;
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return conn;
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Validators loadValidators() {
+        if (!Files.exists(metadataPath)) {
+            return Validators.NONE;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metadataPath)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return Validators.NONE;
+        }
+        return new Validators(properties.getProperty("etag"), properties.getProperty("last-modified"));
+    }
+
+    // Called once the new database is installed, so a failed install is downloaded again next time
+    void saveValidators(Validators validators) throws IOException {
+        Properties properties = new Properties();
+        if (validators.etag() != null) {
+            properties.setProperty("etag", validators.etag());
+        }
+        if (validators.lastModified() != null) {
+            properties.setProperty("last-modified", validators.lastModified());
+        }
+        try (OutputStream out = Files.newOutputStream(metadataPath)) {
+            properties.store(out, "GeoIP database download validators");
+        }
+    }
+
+    record Validators(String etag, String lastModified) {
+        static final Validators NONE = new Validators(null, null);
+    }
+}
@@ -1,116 +1,331 @@
 package gg.gianluca.easystats.util;
 
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.Reader;
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
 import com.maxmind.geoip2.model.CountryResponse;
 import gg.gianluca.easystats.EasyStats;
+import gg.gianluca.easystats.country.CountryTiers;
+import org.bukkit.Bukkit;
 
-import java.io.*;
-import java.net.HttpURLConnection;
+import java.io.IOException;
+import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
-import java.util.zip.GZIPInputStream;
 
 public class GeoIPManager {
     private final EasyStats plugin;
-    private DatabaseReader reader;
+    private volatile DatabaseReader reader;
+    // Name the download is requested under; each installed copy gets a version suffix, since Windows won't replace a
+    // file that a memory-mapped reader still has open
     private final Path databasePath;
+    private volatile Path installedPath;
+    private static final String DATABASE_NAME = "GeoLite2-Country";
     private static final String DOWNLOAD_URL = "https://download.maxmind.com/app/geoip_download?edition_id=GeoLite2-Country&license_key=%s&suffix=tar.gz";
+    private static final String CHECKSUM_URL = "https://download.maxmind.com/app/geoip_download?edition_id=GeoLite2-Country&license_key=%s&suffix=tar.gz.sha256";
+    private static final long ERROR_LOG_INTERVAL_MILLIS = 60_000L;
+
+    // Lookup results, negative ones included, in front of the reader; IPv4 avoids boxing entirely
+    private final int nodeCacheSize;
+    private final Ipv4CountryCache ipv4Cache;
+    private final Map<InetAddress, String> ipv6Cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final AtomicLong lastErrorLog = new AtomicLong();
+    private final LongAdder suppressedErrors = new LongAdder();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private GeoIPDownloader downloader;
 
     public GeoIPManager(EasyStats plugin) {
         this.plugin = plugin;
-        this.databasePath = plugin.getDataFolder().toPath().resolve("GeoLite2-Country.mmdb");
+        this.databasePath = plugin.getDataFolder().toPath().resolve(DATABASE_NAME + ".mmdb");
+        this.nodeCacheSize = Math.max(0, plugin.getConfig().getInt("maxmind.cache.node-cache-size", 4096));
+        int ipCacheSize = Math.max(0, plugin.getConfig().getInt("maxmind.cache.ip-cache-size", 16384));
+        this.ipv4Cache = ipCacheSize > 0 ? new Ipv4CountryCache(ipCacheSize) : null;
+        this.ipv6Cache = ipCacheSize > 0 ? Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, String> eldest) {
+                return size() > ipCacheSize;
+            }
+        }) : null;
     }
 
+    // Opens the installed database right away; downloading and refreshing happen on a background task
     public void initialize() {
-        if (!Files.exists(databasePath)) {
-            String licenseKey = plugin.getConfig().getString("maxmind.license-key");
-            if (licenseKey == null || licenseKey.isEmpty()) {
+        installedPath = findInstalled();
+        if (installedPath != null) {
+            try {
+                reader = openReader(installedPath);
+                plugin.getLogger().info("GeoIP database loaded successfully!");
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to load GeoIP database", e);
+            }
+        }
+
+        String licenseKey = plugin.getConfig().getString("maxmind.license-key");
+        if (licenseKey == null || licenseKey.isEmpty()) {
+            if (reader == null) {
                 plugin.getLogger().warning("MaxMind license key not found in config.yml. GeoIP functionality will be disabled.");
                 plugin.getLogger().warning("Get a free license key at https://www.maxmind.com/en/geolite2/signup");
-                return;
             }
-            downloadDatabase(licenseKey);
+            return;
         }
 
-        try {
-            reader = new DatabaseReader.Builder(databasePath.toFile()).build();
-            plugin.getLogger().info("GeoIP database loaded successfully!");
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to load GeoIP database", e);
+        String downloadUrl = plugin.getConfig().getString("maxmind.download-url", DOWNLOAD_URL);
+        String checksumUrl = plugin.getConfig().getString("maxmind.checksum-url", CHECKSUM_URL);
+        this.downloader = new GeoIPDownloader(String.format(downloadUrl, licenseKey),
+                checksumUrl.isEmpty() ? "" : String.format(checksumUrl, licenseKey),
+                databasePath.resolveSibling(databasePath.getFileName() + ".meta"));
+
+        // With a refresh interval of 0 the database is only downloaded when it's missing
+        long interval = plugin.getConfig().getLong("maxmind.refresh-interval-hours", 24L) * 60L * 60L * 20L;
+        if (interval > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::refresh, reader == null ? 0L : interval, interval);
+        } else if (reader == null) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::refresh);
         }
     }
 
-    private void downloadDatabase(String licenseKey) {
-        plugin.getLogger().info("Downloading GeoIP database...");
-        String downloadUrl = String.format(DOWNLOAD_URL, licenseKey);
+    private DatabaseReader openReader(Path path) throws IOException {
+        // Memory-mapped so the OS page cache holds the tree, with decoded nodes cached on top
+        DatabaseReader.Builder builder = new DatabaseReader.Builder(path.toFile()).fileMode(Reader.FileMode.MEMORY_MAPPED);
+        if (nodeCacheSize > 0) {
+            builder.withCache(new CHMCache(nodeCacheSize));
+        }
+        return builder.build();
+    }
 
+    // Downloads into a sibling file, then swaps it in; lookups keep using the old reader until the swap
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Path download = databasePath.resolveSibling(databasePath.getFileName() + ".download");
         try {
-            URL url = new URL(downloadUrl);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            if (conn.getResponseCode() != 200) {
-                plugin.getLogger().severe("Failed to download GeoIP database. Response code: " + conn.getResponseCode());
+            GeoIPDownloader.Validators validators = downloader.download(databasePath.getFileName().toString(), download, reader != null);
+            if (validators == null) {
                 return;
             }
 
-            // Create a temporary file for the downloaded .tar.gz
-            Path tempFile = Files.createTempFile("geoip", ".tar.gz");
-            
-            // Download the file
-            try (InputStream in = new GZIPInputStream(conn.getInputStream());
-                 OutputStream out = Files.newOutputStream(tempFile)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
+            // Opening it once proves the file is a readable database before it replaces the current one
+            openReader(download).close();
+            Path previousPath = installedPath;
+            long version = Math.max(System.currentTimeMillis(), previousPath != null ? versionOf(previousPath) + 1 : 0L);
+            Path installed = databasePath.resolveSibling(DATABASE_NAME + "-" + version + ".mmdb");
+            try {
+                Files.move(download, installed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(download, installed);
             }
 
-            // Extract the .mmdb file from the .tar.gz
-            try (TarInputStream tarIn = new TarInputStream(Files.newInputStream(tempFile))) {
-                TarEntry entry;
-                while ((entry = tarIn.getNextEntry()) != null) {
-                    if (entry.getName().endsWith("GeoLite2-Country.mmdb")) {
-                        Files.copy(tarIn, databasePath, StandardCopyOption.REPLACE_EXISTING);
-                        break;
-                    }
+            DatabaseReader previous = reader;
+            reader = openReader(installed);
+            installedPath = installed;
+            clearCache();
+            downloader.saveValidators(validators);
+            if (previous != null) {
+                // Lookups that picked up the old reader just before the swap get a few seconds to finish
+                Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+                    closeReader(previous);
+                    deleteDatabase(previousPath);
+                }, 5L * 20L);
+            } else if (previousPath != null) {
+                deleteDatabase(previousPath);
+            }
+            plugin.getLogger().info("GeoIP database " + (previous == null ? "downloaded" : "updated") + " successfully!");
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to refresh GeoIP database: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(download);
+            } catch (IOException ignored) {
+            }
+            refreshing.set(false);
+        }
+    }
+
+    // Newest installed copy, the unversioned name from older releases included; older copies a previous run could
+    // not delete yet are removed now that nothing has them open
+    private Path findInstalled() {
+        Path directory = databasePath.getParent();
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Path> installed = new ArrayList<>();
+        Path newest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, DATABASE_NAME + "*.mmdb")) {
+            for (Path file : files) {
+                if (versionOf(file) < 0) {
+                    continue;
+                }
+                installed.add(file);
+                if (newest == null || versionOf(file) > versionOf(newest)) {
+                    newest = file;
                 }
             }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to list GeoIP databases: " + e.getMessage());
+            return Files.exists(databasePath) ? databasePath : null;
+        }
+        for (Path file : installed) {
+            if (!file.equals(newest)) {
+                deleteDatabase(file);
+            }
+        }
+        return newest;
+    }
 
-            // Clean up the temporary file
-            Files.delete(tempFile);
-            plugin.getLogger().info("GeoIP database downloaded successfully!");
+    // 0 for the unversioned name, -1 for files that aren't an installed database
+    private static long versionOf(Path file) {
+        String name = file.getFileName().toString();
+        if (name.equals(DATABASE_NAME + ".mmdb")) {
+            return 0L;
+        }
+        if (!name.startsWith(DATABASE_NAME + "-") || !name.endsWith(".mmdb")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring(DATABASE_NAME.length() + 1, name.length() - ".mmdb".length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
 
+    private void deleteDatabase(Path file) {
+        try {
+            Files.deleteIfExists(file);
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to download GeoIP database", e);
+            // Windows keeps the file locked until the mapping is garbage collected
+            plugin.getLogger().info("Old GeoIP database " + file.getFileName() + " is still in use, it will be removed on the next start");
         }
     }
 
+    // ISO 3166-1 alpha-2 code, or XX when the address can't be located
     public String getCountry(InetAddress address) {
-        if (reader == null) return "Unknown";
-        
+        DatabaseReader current = reader;
+        if (current == null || address.isLoopbackAddress() || address.isSiteLocalAddress()
+                || address.isLinkLocalAddress() || address.isAnyLocalAddress()) {
+            return CountryTiers.UNKNOWN_CODE;
+        }
+
+        String cached = getCached(address);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long start = System.nanoTime();
         try {
-            CountryResponse response = reader.country(address);
-            return response.getCountry().getName();
+            // tryCountry reports a missing address as empty instead of throwing
+            Optional<CountryResponse> response = current.tryCountry(address);
+            String isoCode = response.map(r -> r.getCountry().getIsoCode()).orElse(null);
+            String country = CountryTiers.isIsoCode(isoCode) ? isoCode : CountryTiers.UNKNOWN_CODE;
+            putCached(address, country);
+            return country;
         } catch (IOException | GeoIp2Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get country for IP: " + address, e);
-            return "Unknown";
+            // Not cached, the next join from this address tries again
+            logLookupFailure(address, e);
+            return CountryTiers.UNKNOWN_CODE;
+        } finally {
+            lookupNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private String getCached(InetAddress address) {
+        if (ipv4Cache == null) {
+            return null;
+        }
+        if (address instanceof Inet4Address) {
+            int index = ipv4Cache.get(toInt(address));
+            return index >= 0 ? CountryTiers.codeAt(index) : null;
+        }
+        return ipv6Cache.get(address);
+    }
+
+    private void putCached(InetAddress address, String country) {
+        if (ipv4Cache == null) {
+            return;
+        }
+        if (address instanceof Inet4Address) {
+            ipv4Cache.put(toInt(address), CountryTiers.indexOf(country));
+        } else {
+            ipv6Cache.put(address, country);
+        }
+    }
+
+    private static int toInt(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    // At most one warning a minute, so a broken database can't flood the console during a join wave
+    private void logLookupFailure(InetAddress address, Exception e) {
+        long now = System.currentTimeMillis();
+        long last = lastErrorLog.get();
+        if (now - last < ERROR_LOG_INTERVAL_MILLIS || !lastErrorLog.compareAndSet(last, now)) {
+            suppressedErrors.increment();
+            return;
+        }
+        long suppressed = suppressedErrors.sumThenReset();
+        plugin.getLogger().warning("Failed to get country for IP " + address.getHostAddress() + ": " + e.getMessage() +
+                (suppressed > 0 ? " (" + suppressed + " more failures since the last warning)" : ""));
+    }
+
+    public void clearCache() {
+        if (ipv4Cache != null) {
+            ipv4Cache.clear();
+            ipv6Cache.clear();
         }
     }
 
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    public int getCacheCapacity() {
+        return ipv4Cache != null ? ipv4Cache.capacity() : 0;
+    }
+
+    // Average time spent in the database reader per cache miss
+    public long getAverageLookupNanos() {
+        long lookups = misses.sum();
+        return lookups > 0 ? lookupNanos.sum() / lookups : 0L;
+    }
+
     public void close() {
-        if (reader != null) {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to close GeoIP database reader", e);
-            }
+        DatabaseReader current = reader;
+        reader = null;
+        if (current != null) {
+            closeReader(current);
+        }
+    }
+
+    private void closeReader(DatabaseReader databaseReader) {
+        try {
+            databaseReader.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close GeoIP database reader", e);
         }
     }
 } 
\ No newline at end of file
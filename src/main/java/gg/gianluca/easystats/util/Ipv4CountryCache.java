@@ -0,0 +1,46 @@
+package gg.gianluca.easystats.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Direct-mapped IPv4 -> country index cache. Each slot packs the address into the high half of a long and the
+// country index + 1 into the low half, so a lookup is one array read with no boxing, allocation or locking.
+// Colliding addresses simply replace each other.
+final class Ipv4CountryCache {
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    Ipv4CountryCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    // Country index, or -1 when the address isn't cached
+    int get(int address) {
+        long entry = slots.get(slot(address));
+        int value = (int) entry;
+        if (value == 0 || (int) (entry >>> 32) != address) {
+            return -1;
+        }
+        return value - 1;
+    }
+
+    void put(int address, int countryIndex) {
+        slots.set(slot(address), ((long) address << 32) | (countryIndex + 1));
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0L);
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private int slot(int address) {
+        int hash = address * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
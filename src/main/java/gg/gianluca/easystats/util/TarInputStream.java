@@ -1,6 +1,7 @@
 package gg.gianluca.easystats.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 public class TarInputStream extends InputStream {
     private final InputStream in;
@@ -16,27 +17,14 @@ public class TarInputStream extends InputStream {
 
     public TarEntry getNextEntry() throws IOException {
         if (currentEntry != null) {
-            long bytesToSkip = currentFileSize - bytesReadInFile;
             // Skip to the end of the current file plus padding
-            while (bytesToSkip > 0) {
-                long skipped = in.skip(bytesToSkip);
-                if (skipped <= 0) break;
-                bytesToSkip -= skipped;
-                bytesRead += skipped;
-            }
-            // Skip padding bytes
             long padding = (512 - (currentFileSize % 512)) % 512;
-            while (padding > 0) {
-                long skipped = in.skip(padding);
-                if (skipped <= 0) break;
-                padding -= skipped;
-                bytesRead += skipped;
-            }
+            skipFully(currentFileSize - bytesReadInFile + padding);
         }
 
         byte[] header = new byte[512];
         int read = readFully(header);
-        if (read == -1) return null;
+        if (read < header.length) return null;
         
         // Check for end of archive (empty header)
         boolean empty = true;
@@ -48,9 +36,14 @@ public class TarInputStream extends InputStream {
         }
         if (empty) return null;
 
-        String name = new String(header, 0, 100).trim();
-        String size = new String(header, 124, 12).trim();
-        currentFileSize = Long.parseLong(size, 8);
+        String name = field(header, 0, 100);
+        // ustar archives keep the leading directories of long paths in a separate prefix field
+        String prefix = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar") ? field(header, 345, 155) : "";
+        if (!prefix.isEmpty()) {
+            name = prefix + "/" + name;
+        }
+        String size = field(header, 124, 12);
+        currentFileSize = size.isEmpty() ? 0 : Long.parseLong(size, 8);
         bytesReadInFile = 0;
         currentEntry = new TarEntry(name);
         return currentEntry;
@@ -79,6 +72,35 @@ public class TarInputStream extends InputStream {
         return read;
     }
 
+    // Fields are NUL terminated or padded with spaces
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII).trim();
+    }
+
+    // InputStream.skip may return 0 before the end of the stream (GZIPInputStream does), so fall back to reading
+    private void skipFully(long count) throws IOException {
+        byte[] buffer = null;
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (buffer == null) {
+                    buffer = new byte[8192];
+                }
+                int r = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+                if (r == -1) {
+                    throw new EOFException("Unexpected end of tar archive");
+                }
+                skipped = r;
+            }
+            count -= skipped;
+            bytesRead += skipped;
+        }
+    }
+
     private int readFully(byte[] buffer) throws IOException {
         int read = 0;
         while (read < buffer.length) {